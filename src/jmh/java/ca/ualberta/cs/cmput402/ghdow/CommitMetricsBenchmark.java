@@ -0,0 +1,48 @@
+package ca.ualberta.cs.cmput402.ghdow;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.*;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class CommitMetricsBenchmark {
+    @Param({"1000", "100000", "10000000"})
+    int commits;
+
+    private MyGithub spyGithub;
+
+    @Setup
+    public void setUp() throws IOException {
+        // Same approach as MyGithubTest: a spy whose commits are stubbed out
+        spyGithub = spy(new MyGithub("fake_token"));
+        doReturn(SyntheticData.commitTimes(commits)).when(spyGithub).getCommitTimes();
+    }
+
+    // refresh() drops the cached stats so every call makes a full pass
+
+    @Benchmark
+    public String mostPopularDay() throws IOException {
+        spyGithub.refresh();
+        return spyGithub.getMostPopularDay();
+    }
+
+    @Benchmark
+    public String mostPopularMonth() throws IOException {
+        spyGithub.refresh();
+        return spyGithub.getMostPopularMonth();
+    }
+
+    @Benchmark
+    public double averageTimeBetweenCommits() throws IOException {
+        spyGithub.refresh();
+        return spyGithub.getAverageTimeBetweenCommits();
+    }
+}
@@ -0,0 +1,69 @@
+package ca.ualberta.cs.cmput402.ghdow;
+
+import org.kohsuke.github.*;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.*;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class PullRequestMetricsBenchmark {
+    // Every pull request is a Mockito mock, so this stops well short of 10^7
+    @Param({"1000", "10000", "100000"})
+    int pullRequests;
+
+    // 0 averages over every pull request, otherwise over those closed in the last windowDays
+    @Param({"0", "1000"})
+    int windowDays;
+
+    private MyGithub spyGithub;
+
+    @Setup
+    public void setUp() throws IOException {
+        spyGithub = spy(new MyGithub("fake_token"));
+        GHMyself mockMyself = mock(GHMyself.class);
+        spyGithub.myself = mockMyself;
+        if (windowDays > 0) {
+            spyGithub.setPullRequestWindow(Duration.ofDays(windowDays));
+        }
+
+        Random random = new Random(pullRequests);
+        Map<String, GHRepository> repoMap = new HashMap<>();
+        for (int r = 0; r < SyntheticData.REPOS; r++) {
+            List<long[]> times = new ArrayList<>();
+            for (int i = r; i < pullRequests; i += SyntheticData.REPOS) {
+                long created = SyntheticData.START + (long) (random.nextDouble() * SyntheticData.TEN_YEARS);
+                long closed = created + (long) (random.nextDouble() * 30 * SyntheticData.DAY);
+                times.add(new long[] {created, closed});
+            }
+            // GitHub lists them most recently updated (here: closed) first
+            times.sort(Comparator.comparingLong((long[] t) -> t[1]).reversed());
+            List<GHPullRequest> prs = new ArrayList<>();
+            for (long[] t : times) {
+                prs.add(MockPullRequests.closed(t[0], t[1]));
+            }
+            GHRepository repo = mock(GHRepository.class);
+            when(repo.getName()).thenReturn("repo" + r);
+            GHPullRequestQueryBuilder query = mock(GHPullRequestQueryBuilder.class, RETURNS_SELF);
+            when(query.list()).thenReturn(MockPages.paged(prs));
+            when(repo.queryPullRequests()).thenReturn(query);
+            repoMap.put("repo" + r, repo);
+        }
+        when(mockMyself.getRepositories()).thenReturn(repoMap);
+    }
+
+    @Benchmark
+    public double averagePullRequestDuration() throws IOException {
+        spyGithub.refresh();
+        return spyGithub.getAveragePullRequestDuration();
+    }
+}
@@ -0,0 +1,24 @@
+package ca.ualberta.cs.cmput402.ghdow;
+
+import java.util.Random;
+
+// Reproducible fake commits for the benchmarks (pull requests come from MockPullRequests)
+class SyntheticData {
+    static final long DAY = 24L * 60 * 60 * 1000;
+    static final long TEN_YEARS = 3653 * DAY;
+    static final long START = 1_420_070_400_000L; // 2015-01-01
+    static final int REPOS = 20;
+
+    static CommitTimes commitTimes(int commits) {
+        Random random = new Random(commits);
+        CommitTimes times = new CommitTimes();
+        for (int repo = 0; repo < REPOS; repo++) {
+            times.repoId("repo" + repo);
+        }
+        for (int i = 0; i < commits; i++) {
+            times.add(START + (long) (random.nextDouble() * TEN_YEARS), random.nextInt(REPOS));
+        }
+        times.trimToSize();
+        return times;
+    }
+}
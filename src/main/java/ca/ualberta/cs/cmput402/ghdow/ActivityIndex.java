@@ -0,0 +1,302 @@
+package ca.ualberta.cs.cmput402.ghdow;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.*;
+
+// Commit counts per local day, overall and per repository, in int arrays
+// indexed by epoch day, plus a day of week x hour heatmap. Range questions
+// ("commits per week in 2025") and streaks are sums and scans over those
+// arrays, so they need neither the commits nor GitHub.
+//
+// update() only adds commits newer than what was already counted of their
+// repository, and the index is saved between runs like the CommitCache.
+public class ActivityIndex {
+    private static final int MAGIC = 0x67686461; // "ghda"
+    private static final int VERSION = 1;
+
+    private final Path file;
+    private final String author;
+    private final TimeBuckets buckets;
+    private final Days total = new Days();
+    private final Map<String, Repo> repos = new HashMap<>();
+    // Monday 00:00-01:00 first, Sunday 23:00-24:00 last
+    private final int[] heatmap = new int[7 * 24];
+    private int commitCount;
+
+    // Counts for consecutive days from `first`, with room to grow either way
+    private static class Days {
+        long first;
+        int[] counts = new int[0];
+
+        void add(long day) {
+            if (counts.length == 0) {
+                first = day;
+                counts = new int[16];
+            } else if (day < first) {
+                int grow = (int) Math.max(first - day, counts.length);
+                int[] grown = new int[counts.length + grow];
+                System.arraycopy(counts, 0, grown, grow, counts.length);
+                counts = grown;
+                first -= grow;
+            } else if (day >= first + counts.length) {
+                counts = Arrays.copyOf(counts, (int) Math.max(day - first + 1, counts.length * 2L));
+            }
+            counts[(int) (day - first)]++;
+        }
+
+        int get(long day) {
+            return day < first || day >= first + counts.length ? 0 : counts[(int) (day - first)];
+        }
+
+        // Commits from day `from` up to but not including day `to`
+        int sum(long from, long to) {
+            int sum = 0;
+            for (long day = Math.max(from, first); day < Math.min(to, first + counts.length); day++) {
+                sum += counts[(int) (day - first)];
+            }
+            return sum;
+        }
+
+        void write(DataOutputStream out) throws IOException {
+            // Without the empty days at either end
+            int start = 0;
+            int end = counts.length;
+            while (start < end && counts[start] == 0) start++;
+            while (end > start && counts[end - 1] == 0) end--;
+            out.writeLong(first + start);
+            out.writeInt(end - start);
+            for (int i = start; i < end; i++) {
+                out.writeInt(counts[i]);
+            }
+        }
+
+        void read(DataInputStream in) throws IOException {
+            first = in.readLong();
+            counts = new int[in.readInt()];
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] = in.readInt();
+            }
+        }
+    }
+
+    private static class Repo {
+        final Days days = new Days();
+        // Newest commit counted, and how many were counted at exactly that time
+        long watermark = Long.MIN_VALUE;
+        int atWatermark;
+    }
+
+    // `zone` decides which local day (and hour) a commit falls on. Without a
+    // file the index is only kept in memory.
+    public ActivityIndex(Path file, String author, ZoneId zone) {
+        this.file = file;
+        this.author = author;
+        this.buckets = new TimeBuckets(zone);
+    }
+
+    // A missing or unreadable file, or one for another author or zone, just means we start empty
+    public static ActivityIndex open(Path file, String author, ZoneId zone) {
+        ActivityIndex index = new ActivityIndex(file, author, zone);
+        if (Files.exists(file)) {
+            try {
+                index.load();
+            } catch (IOException e) {
+                System.err.println("Ignoring activity index " + file + ": " + e.getMessage());
+                index = new ActivityIndex(file, author, zone);
+            }
+        }
+        return index;
+    }
+
+    public static Path defaultFile(String author) {
+        return Path.of(System.getProperty("user.home"), ".ghdow", "activity-" + author + ".bin");
+    }
+
+    public ZoneId getZone() {
+        return buckets.getZone();
+    }
+
+    // Counts the commits newer than each repository's watermark (and any more
+    // at exactly the watermark than last time). Returns how many were added.
+    public synchronized int update(CommitTimes times) {
+        int repoCount = times.getRepoCount();
+        Repo[] byId = new Repo[repoCount];
+        for (int id = 0; id < repoCount; id++) {
+            byId[id] = repos.computeIfAbsent(times.getRepoName(id), name -> new Repo());
+        }
+        // First the newest commit of each repository and how many share the watermark
+        long[] newest = new long[repoCount];
+        int[] atNewest = new int[repoCount];
+        int[] atWatermark = new int[repoCount];
+        Arrays.fill(newest, Long.MIN_VALUE);
+        for (int i = 0; i < times.size(); i++) {
+            int id = times.getRepoId(i);
+            long time = times.getTime(i);
+            if (time > newest[id]) {
+                newest[id] = time;
+                atNewest[id] = 0;
+            }
+            if (time == newest[id]) atNewest[id]++;
+            if (time == byId[id].watermark) atWatermark[id]++;
+        }
+        int added = 0;
+        for (int id = 0; id < repoCount; id++) {
+            atWatermark[id] -= byId[id].atWatermark;
+        }
+        for (int i = 0; i < times.size(); i++) {
+            int id = times.getRepoId(i);
+            long time = times.getTime(i);
+            Repo repo = byId[id];
+            if (time > repo.watermark || (time == repo.watermark && atWatermark[id]-- > 0)) {
+                add(repo, time);
+                added++;
+            }
+        }
+        for (int id = 0; id < repoCount; id++) {
+            Repo repo = byId[id];
+            if (newest[id] > repo.watermark) {
+                repo.watermark = newest[id];
+                repo.atWatermark = atNewest[id];
+            } else if (newest[id] == repo.watermark) {
+                repo.atWatermark = Math.max(repo.atWatermark, atNewest[id]);
+            }
+        }
+        return added;
+    }
+
+    private void add(Repo repo, long time) {
+        long localMillis = buckets.localMillis(time);
+        long day = Math.floorDiv(localMillis, TimeBuckets.MILLIS_PER_DAY);
+        total.add(day);
+        repo.days.add(day);
+        heatmap[(TimeBuckets.dayOfWeekOfEpochDay(day) - 1) * 24 + TimeBuckets.hourOfLocalMillis(localMillis)]++;
+        commitCount++;
+    }
+
+    public synchronized int getCommitCount() {
+        return commitCount;
+    }
+
+    public synchronized Set<String> getRepoNames() {
+        return new TreeSet<>(repos.keySet());
+    }
+
+    public synchronized int getCount(LocalDate day) {
+        return total.get(day.toEpochDay());
+    }
+
+    // Commits from `from` up to but not including `to`
+    public synchronized int getCount(LocalDate from, LocalDate to) {
+        return total.sum(from.toEpochDay(), to.toEpochDay());
+    }
+
+    public synchronized int getCount(String repo, LocalDate from, LocalDate to) {
+        Repo entry = repos.get(repo);
+        return entry == null ? 0 : entry.days.sum(from.toEpochDay(), to.toEpochDay());
+    }
+
+    // Commits in each `days` long stretch from `from` on, e.g. per week of a
+    // year with (2025-01-01, 2026-01-01, 7). The last stretch may be shorter.
+    public synchronized int[] getCounts(LocalDate from, LocalDate to, int days) {
+        if (days < 1) {
+            throw new IllegalArgumentException("Not a valid number of days: " + days);
+        }
+        long start = from.toEpochDay();
+        long end = to.toEpochDay();
+        int[] counts = new int[(int) Math.max(0, (end - start + days - 1) / days)];
+        for (int i = 0; i < counts.length; i++) {
+            long bucketStart = start + (long) i * days;
+            counts[i] = total.sum(bucketStart, Math.min(end, bucketStart + days));
+        }
+        return counts;
+    }
+
+    // [day of week - 1][hour], Monday first
+    public synchronized int[][] getHeatmap() {
+        int[][] result = new int[7][];
+        for (int day = 0; day < 7; day++) {
+            result[day] = Arrays.copyOfRange(heatmap, day * 24, day * 24 + 24);
+        }
+        return result;
+    }
+
+    // Most days in a row with at least one commit
+    public synchronized int getLongestStreak() {
+        int longest = 0;
+        int current = 0;
+        for (int count : total.counts) {
+            current = count > 0 ? current + 1 : 0;
+            longest = Math.max(longest, current);
+        }
+        return longest;
+    }
+
+    // Days in a row with commits up to `today`; a streak that reached
+    // yesterday still counts, as there's time left to commit today
+    public synchronized int getCurrentStreak(LocalDate today) {
+        long day = today.toEpochDay();
+        if (total.get(day) == 0) day--;
+        int streak = 0;
+        while (total.get(day) > 0) {
+            streak++;
+            day--;
+        }
+        return streak;
+    }
+
+    private void load() throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Not an activity index");
+            }
+            if (!author.equals(in.readUTF())) {
+                throw new IOException("Index belongs to another author");
+            }
+            // Days and hours are local, so they don't carry over to another zone
+            if (!getZone().getId().equals(in.readUTF())) {
+                throw new IOException("Index is for another time zone");
+            }
+            commitCount = in.readInt();
+            for (int i = 0; i < heatmap.length; i++) {
+                heatmap[i] = in.readInt();
+            }
+            total.read(in);
+            int repoCount = in.readInt();
+            for (int i = 0; i < repoCount; i++) {
+                Repo repo = new Repo();
+                String name = in.readUTF();
+                repo.watermark = in.readLong();
+                repo.atWatermark = in.readInt();
+                repo.days.read(in);
+                repos.put(name, repo);
+            }
+        }
+    }
+
+    public synchronized void save() throws IOException {
+        if (file == null) return;
+        AtomicFiles.write(file, out -> {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeUTF(author);
+            out.writeUTF(getZone().getId());
+            out.writeInt(commitCount);
+            for (int count : heatmap) {
+                out.writeInt(count);
+            }
+            total.write(out);
+            out.writeInt(repos.size());
+            for (Map.Entry<String, Repo> entry : repos.entrySet()) {
+                Repo repo = entry.getValue();
+                out.writeUTF(entry.getKey());
+                out.writeLong(repo.watermark);
+                out.writeInt(repo.atWatermark);
+                repo.days.write(out);
+            }
+        });
+    }
+}
@@ -0,0 +1,33 @@
+package ca.ualberta.cs.cmput402.ghdow;
+
+// What MyGithub.getApproximateMetrics() found in the pages it sampled, in days
+public class ApproximateMetrics {
+    private final SampledDistribution commitGaps;
+    private final SampledDistribution pullRequestDurations;
+    private int pagesFetched;
+
+    ApproximateMetrics(int k) {
+        commitGaps = new SampledDistribution(k);
+        pullRequestDurations = new SampledDistribution(k);
+    }
+
+    // Gaps between consecutive commits of the same repository. Not the same
+    // thing as getAverageTimeBetweenCommits, which merges all repositories
+    // first: working on two repositories at once makes these gaps longer.
+    public SampledDistribution getCommitGaps() {
+        return commitGaps;
+    }
+
+    public SampledDistribution getPullRequestDurations() {
+        return pullRequestDurations;
+    }
+
+    // One per request, counted once the page arrives, even if we only used part of it
+    public int getPagesFetched() {
+        return pagesFetched;
+    }
+
+    void addPage() {
+        pagesFetched++;
+    }
+}
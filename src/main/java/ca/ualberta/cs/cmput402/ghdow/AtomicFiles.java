@@ -0,0 +1,28 @@
+package ca.ualberta.cs.cmput402.ghdow;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+// Saving for the files we keep between runs (the commit cache, the activity index)
+final class AtomicFiles {
+    interface Writer {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    private AtomicFiles() {
+    }
+
+    static void write(Path file, Writer writer) throws IOException {
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        // Write everything to the side first so a crash never leaves half a file behind
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+            writer.write(out);
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
@@ -0,0 +1,122 @@
+package ca.ualberta.cs.cmput402.ghdow;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// Runs the report for many users in one JVM. Users run concurrently on a
+// bounded pool, and each user's result is written as one JSON line as soon
+// as that user is done. Whatever the factory shares between MyGithub
+// instances (HTTP connections, response cache, fetch pool) is set up once.
+public class BatchReport {
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    public interface MyGithubFactory {
+        MyGithub create(String token) throws IOException;
+    }
+
+    public static class User {
+        final String name;
+        final String token;
+
+        public User(String name, String token) {
+            this.name = name;
+            this.token = token;
+        }
+    }
+
+    private final MyGithubFactory factory;
+    private final int parallelUsers;
+
+    public BatchReport(MyGithubFactory factory, int parallelUsers) {
+        this.factory = factory;
+        this.parallelUsers = parallelUsers;
+    }
+
+    // One user per line, "name token" or just "token". Blank lines and # comments are skipped.
+    public static List<User> readUsers(Path file) throws IOException {
+        List<User> users = new ArrayList<>();
+        for (String line : Files.readAllLines(file)) {
+            line = line.strip();
+            if (line.isEmpty() || line.startsWith("#")) continue;
+            String[] parts = line.split("\\s+");
+            if (parts.length == 1) {
+                users.add(new User(null, parts[0]));
+            } else if (parts.length == 2) {
+                users.add(new User(parts[0], parts[1]));
+            } else {
+                throw new IOException("Not a user line: " + line);
+            }
+        }
+        return users;
+    }
+
+    // Returns how many users failed
+    public int run(List<User> users, Writer out) throws IOException {
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, Math.min(parallelUsers, users.size())));
+        try {
+            List<Future<Boolean>> futures = new ArrayList<>();
+            for (User user : users) {
+                futures.add(pool.submit(() -> report(user, out)));
+            }
+            int failures = 0;
+            for (Future<Boolean> future : futures) {
+                if (!MyGithub.await(future)) {
+                    failures++;
+                }
+            }
+            return failures;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    // One user's failure is written out as an error line, it doesn't stop the batch
+    private boolean report(User user, Writer out) throws IOException {
+        ObjectNode line;
+        boolean ok;
+        try {
+            line = metrics(factory.create(user.token));
+            ok = true;
+        } catch (IOException | RuntimeException e) {
+            line = MAPPER.createObjectNode();
+            if (user.name != null) {
+                line.put("login", user.name);
+            }
+            line.put("error", String.valueOf(e.getMessage()));
+            ok = false;
+        }
+        String json = MAPPER.writeValueAsString(line);
+        synchronized (out) {
+            out.write(json);
+            out.write('\n');
+            out.flush();
+        }
+        return ok;
+    }
+
+    static ObjectNode metrics(MyGithub my) throws IOException {
+        ObjectNode json = MAPPER.createObjectNode();
+        json.put("login", my.getGithubName());
+        CommitStats stats = my.getCommitStats();
+        json.put("commits", stats.getCommitCount());
+        if (stats.getCommitCount() > 0) {
+            json.put("mostPopularDay", stats.getMostPopularDay());
+            json.put("mostPopularMonth", stats.getMostPopularMonth());
+            json.put("mostPopularHour", stats.getMostPopularHour());
+        }
+        json.put("averageTimeBetweenCommits", stats.getAverageTimeBetweenCommits());
+        json.put("averagePullRequestDuration", my.getAveragePullRequestDuration());
+        json.put("averageCollaborators", my.getAverageCollaborators());
+        return json;
+    }
+}
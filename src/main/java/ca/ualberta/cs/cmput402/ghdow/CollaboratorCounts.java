@@ -0,0 +1,100 @@
+package ca.ualberta.cs.cmput402.ghdow;
+
+import org.kohsuke.github.GHRepository;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+// Collaborators per repository, kept for `ttlMillis` so refreshes (and other
+// MyGithub instances sharing this) don't page through them again. Only the
+// logins are kept, which is also what getDistinctCount() counts.
+public class CollaboratorCounts {
+    private final long ttlMillis;
+    private final ConcurrentMap<String, Future<Entry>> repos = new ConcurrentHashMap<>();
+
+    private static class Entry {
+        final String[] logins;
+        final long loadedAt;
+
+        Entry(String[] logins, long loadedAt) {
+            this.logins = logins;
+            this.loadedAt = loadedAt;
+        }
+    }
+
+    public CollaboratorCounts(long ttlMillis) {
+        this.ttlMillis = ttlMillis;
+    }
+
+    // Keyed by full name; a repository that is already loading is waited for, not loaded again
+    public int count(GHRepository repo) throws IOException {
+        String name = repo.getFullName();
+        while (true) {
+            Future<Entry> future = repos.get(name);
+            if (future != null && future.isDone() && isExpired(future)) {
+                repos.remove(name, future);
+                continue;
+            }
+            if (future == null) {
+                FutureTask<Entry> task = new FutureTask<>(() -> load(repo));
+                future = repos.putIfAbsent(name, task);
+                if (future == null) {
+                    future = task;
+                    task.run();
+                }
+            }
+            try {
+                return MyGithub.await(future).logins.length;
+            } catch (IOException | RuntimeException e) {
+                repos.remove(name, future);
+                throw e;
+            }
+        }
+    }
+
+    // Logins collaborating on at least one of these repositories, of those counted so far
+    public int getDistinctCount(Collection<GHRepository> repositories) {
+        Set<String> distinct = new HashSet<>();
+        for (GHRepository repo : repositories) {
+            Future<Entry> future = repos.get(repo.getFullName());
+            if (future != null && future.isDone()) {
+                try {
+                    for (String login : MyGithub.await(future).logins) {
+                        distinct.add(login);
+                    }
+                } catch (IOException | RuntimeException e) {
+                    // Failed loads aren't counted
+                }
+            }
+        }
+        return distinct.size();
+    }
+
+    public int size() {
+        return repos.size();
+    }
+
+    // Everything is loaded again on the next count
+    public void clear() {
+        repos.clear();
+    }
+
+    private boolean isExpired(Future<Entry> future) {
+        try {
+            return System.currentTimeMillis() - MyGithub.await(future).loadedAt > ttlMillis;
+        } catch (IOException | RuntimeException e) {
+            return true;
+        }
+    }
+
+    // Just the logins, not a GHUser set held on to for its size
+    private Entry load(GHRepository repo) throws IOException {
+        return new Entry(repo.getCollaboratorNames().toArray(new String[0]), System.currentTimeMillis());
+    }
+}
@@ -0,0 +1,180 @@
+package ca.ualberta.cs.cmput402.ghdow;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+// Commit times per repository, saved between runs so we only have to ask
+// GitHub for commits from around the newest one we've seen (the watermark)
+// on. Each commit is kept with its SHA, so one listed again is only counted once.
+// A load that stopped partway through a repository is saved too: its pages
+// are kept, and the next run lists the repository again, skipping them.
+public class CommitCache {
+    private static final int MAGIC = 0x67686477; // "ghdw"
+    // Versions before 3 had no SHAs, and may have missed commits because of
+    // it; 3 also kept where to resume an unfinished load by date
+    private static final int VERSION = 4;
+
+    private final Path file;
+    private final String author;
+    private final Map<String, Entry> entries = new HashMap<>();
+
+    private static class Entry {
+        long[] times = new long[0];
+        String[] shas = new String[0];
+        int size;
+        final Set<String> known = new HashSet<>();
+        long watermark;
+        // While a load is unfinished the watermark stays put, so a restart
+        // still asks for everything since it
+        boolean complete = true;
+        long pendingNewest;
+
+        // False if we already have the commit
+        boolean add(String sha, long time) {
+            if (!known.add(sha)) return false;
+            if (size == times.length) {
+                times = Arrays.copyOf(times, Math.max(16, size * 2));
+                shas = Arrays.copyOf(shas, times.length);
+            }
+            times[size] = time;
+            shas[size] = sha;
+            size++;
+            return true;
+        }
+
+        long[] toArray() {
+            return Arrays.copyOf(times, size);
+        }
+    }
+
+    public CommitCache(Path file, String author) {
+        this.file = file;
+        this.author = author;
+    }
+
+    // A missing, unreadable or other author's cache file just means we start empty
+    public static CommitCache open(Path file, String author) {
+        CommitCache cache = new CommitCache(file, author);
+        if (Files.exists(file)) {
+            try {
+                cache.load();
+            } catch (IOException e) {
+                System.err.println("Ignoring commit cache " + file + ": " + e.getMessage());
+                cache.entries.clear();
+            }
+        }
+        return cache;
+    }
+
+    public static Path defaultFile(String author) {
+        return Path.of(System.getProperty("user.home"), ".ghdow", "commits-" + author + ".bin");
+    }
+
+    private void load() throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a commit cache");
+            }
+            if (in.readInt() != VERSION) {
+                throw new IOException("Cache from another version");
+            }
+            if (!author.equals(in.readUTF())) {
+                throw new IOException("Cache belongs to another author");
+            }
+            int repoCount = in.readInt();
+            for (int i = 0; i < repoCount; i++) {
+                String repo = in.readUTF();
+                Entry entry = new Entry();
+                entry.watermark = in.readLong();
+                entry.complete = in.readBoolean();
+                entry.pendingNewest = in.readLong();
+                int size = in.readInt();
+                for (int j = 0; j < size; j++) {
+                    entry.add(in.readUTF(), in.readLong());
+                }
+                entries.put(repo, entry);
+            }
+        }
+    }
+
+    public synchronized void save() throws IOException {
+        AtomicFiles.write(file, out -> {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeUTF(author);
+            out.writeInt(entries.size());
+            for (Map.Entry<String, Entry> repo : entries.entrySet()) {
+                Entry entry = repo.getValue();
+                out.writeUTF(repo.getKey());
+                out.writeLong(entry.watermark);
+                out.writeBoolean(entry.complete);
+                out.writeLong(entry.pendingNewest);
+                out.writeInt(entry.size);
+                for (int i = 0; i < entry.size; i++) {
+                    out.writeUTF(entry.shas[i]);
+                    out.writeLong(entry.times[i]);
+                }
+            }
+        });
+    }
+
+    public synchronized boolean contains(String repo) {
+        return entries.containsKey(repo);
+    }
+
+    public synchronized long[] getTimes(String repo) {
+        Entry entry = entries.get(repo);
+        return entry == null ? new long[0] : entry.toArray();
+    }
+
+    // Newest commit time we have for the repository, or 0 if we have none
+    public synchronized long getWatermark(String repo) {
+        Entry entry = entries.get(repo);
+        return entry == null ? 0 : entry.watermark;
+    }
+
+    // False while a load of the repository is only partly done
+    public synchronized boolean isComplete(String repo) {
+        Entry entry = entries.get(repo);
+        return entry == null || entry.complete;
+    }
+
+    // Adds one page of a load that isn't finished yet.
+    // Commits we already have are skipped. Returns how many were new.
+    public synchronized int appendPage(String repo, String[] shas, long[] times) {
+        Entry entry = entries.computeIfAbsent(repo, r -> new Entry());
+        if (entry.complete) {
+            entry.complete = false;
+            entry.pendingNewest = entry.watermark;
+        }
+        int added = 0;
+        for (int i = 0; i < times.length; i++) {
+            if (entry.add(shas[i], times[i])) added++;
+            entry.pendingNewest = Math.max(entry.pendingNewest, times[i]);
+        }
+        return added;
+    }
+
+    // The load is done: moves the watermark up to the newest commit it found
+    public synchronized long[] complete(String repo) {
+        Entry entry = entries.computeIfAbsent(repo, r -> new Entry());
+        if (!entry.complete) {
+            entry.watermark = Math.max(entry.watermark, entry.pendingNewest);
+            entry.complete = true;
+            entry.pendingNewest = 0;
+        }
+        return entry.toArray();
+    }
+
+    // Adds commits fetched since the watermark and moves the watermark up to the newest one
+    public synchronized long[] append(String repo, String[] shas, long[] times) {
+        appendPage(repo, shas, times);
+        return complete(repo);
+    }
+}
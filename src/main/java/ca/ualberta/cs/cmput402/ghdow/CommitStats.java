@@ -0,0 +1,89 @@
+package ca.ualberta.cs.cmput402.ghdow;
+
+import java.util.Calendar;
+
+// All the commit metrics, as computed by CommitStatsAccumulator
+public class CommitStats {
+    private final int commitCount;
+    private final int[] days;
+    private final int[] months;
+    private final int[] hours;
+    private final long firstCommit;
+    private final long lastCommit;
+
+    CommitStats(int commitCount, int[] days, int[] months, int[] hours, long firstCommit, long lastCommit) {
+        this.commitCount = commitCount;
+        this.days = days;
+        this.months = months;
+        this.hours = hours;
+        this.firstCommit = firstCommit;
+        this.lastCommit = lastCommit;
+    }
+
+    static private int argMax(int[] days) {
+        int max = Integer.MIN_VALUE;
+        int arg = -1;
+        for (int i = 0; i < days.length; i++) {
+            if (days[i] > max) {
+                max = days[i];
+                arg = i;
+            }
+        }
+        return arg;
+    }
+
+    static private String intToDay(int day) {
+        return switch (day) {
+            case Calendar.SUNDAY -> "Sunday";
+            case Calendar.MONDAY -> "Monday";
+            case Calendar.TUESDAY -> "Tuesday";
+            case Calendar.WEDNESDAY -> "Wednesday";
+            case Calendar.THURSDAY -> "Thursday";
+            case Calendar.FRIDAY -> "Friday";
+            case Calendar.SATURDAY -> "Saturday";
+            default -> throw new IllegalArgumentException("Not a day: " + day);
+        };
+    }
+
+    static private String intToMonth(int month) {
+        return switch (month) {
+            case Calendar.JANUARY -> "January";
+            case Calendar.FEBRUARY -> "February";
+            case Calendar.MARCH -> "March";
+            case Calendar.APRIL -> "April";
+            case Calendar.MAY -> "May";
+            case Calendar.JUNE -> "June";
+            case Calendar.JULY -> "July";
+            case Calendar.AUGUST -> "August";
+            case Calendar.SEPTEMBER -> "September";
+            case Calendar.OCTOBER -> "October";
+            case Calendar.NOVEMBER -> "November";
+            case Calendar.DECEMBER -> "December";
+            default -> throw new IllegalArgumentException("Not a month: " + month);
+        };
+    }
+
+    public int getCommitCount() {
+        return commitCount;
+    }
+
+    public String getMostPopularDay() {
+        return intToDay(argMax(days));
+    }
+
+    public String getMostPopularMonth() {
+        return intToMonth(argMax(months));
+    }
+
+    // 0 to 23, in the time zone the stats were computed for
+    public int getMostPopularHour() {
+        return argMax(hours);
+    }
+
+    // Average time between commits (in days)
+    public double getAverageTimeBetweenCommits() {
+        if (commitCount < 2) return 0;
+        double avgMillis = (double) (lastCommit - firstCommit) / (commitCount - 1);
+        return avgMillis / (1000 * 60 * 60 * 24); // return average in days
+    }
+}
@@ -0,0 +1,103 @@
+package ca.ualberta.cs.cmput402.ghdow;
+
+import java.time.ZoneId;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+// Computes every commit metric in a single pass, one commit time at a time
+public class CommitStatsAccumulator {
+    // Below this many commits a single pass is quicker than splitting it up
+    static final int PARALLEL_THRESHOLD = 100_000;
+    private static final int CHUNK = 1 << 15;
+
+    private final TimeBuckets buckets;
+    // Indexed like Calendar.DAY_OF_WEEK and Calendar.MONTH
+    private final int[] days = new int[8];
+    private final int[] months = new int[12];
+    private final int[] hours = new int[24];
+    private int commitCount;
+    private long firstCommit = Long.MAX_VALUE;
+    private long lastCommit = Long.MIN_VALUE;
+
+    public CommitStatsAccumulator() {
+        this(new TimeBuckets(ZoneId.systemDefault()));
+    }
+
+    public CommitStatsAccumulator(TimeBuckets buckets) {
+        this.buckets = buckets;
+    }
+
+    public void add(long time) {
+        long localTime = buckets.localMillis(time);
+        long epochDay = Math.floorDiv(localTime, TimeBuckets.MILLIS_PER_DAY);
+        // Calendar counts from Sunday = 1, java.time from Monday = 1
+        days[TimeBuckets.dayOfWeekOfEpochDay(epochDay) % 7 + 1] += 1;
+        months[TimeBuckets.monthOfEpochDay(epochDay) - 1] += 1;
+        hours[TimeBuckets.hourOfLocalMillis(localTime)] += 1;
+        // The gaps between sorted commits add up to last - first,
+        // so we don't need to keep (or sort) the dates themselves
+        firstCommit = Math.min(firstCommit, time);
+        lastCommit = Math.max(lastCommit, time);
+        commitCount++;
+    }
+
+    // Adds everything `other` counted, as if its commits had been added here
+    public void merge(CommitStatsAccumulator other) {
+        for (int i = 0; i < days.length; i++) days[i] += other.days[i];
+        for (int i = 0; i < months.length; i++) months[i] += other.months[i];
+        for (int i = 0; i < hours.length; i++) hours[i] += other.hours[i];
+        firstCommit = Math.min(firstCommit, other.firstCommit);
+        lastCommit = Math.max(lastCommit, other.lastCommit);
+        commitCount += other.commitCount;
+    }
+
+    // Large sets are split between the common fork-join pool, each part
+    // counted by its own accumulator and the parts merged as they finish
+    public static CommitStats of(CommitTimes times, TimeBuckets buckets) {
+        if (times.size() < PARALLEL_THRESHOLD) {
+            CommitStatsAccumulator stats = new CommitStatsAccumulator(buckets);
+            stats.addAll(times, 0, times.size());
+            return stats.getResult();
+        }
+        return ForkJoinPool.commonPool().invoke(new Part(times, buckets, 0, times.size())).getResult();
+    }
+
+    private void addAll(CommitTimes times, int from, int to) {
+        for (int i = from; i < to; i++) {
+            add(times.getTime(i));
+        }
+    }
+
+    private static class Part extends RecursiveTask<CommitStatsAccumulator> {
+        private final CommitTimes times;
+        private final TimeBuckets buckets;
+        private final int from;
+        private final int to;
+
+        Part(CommitTimes times, TimeBuckets buckets, int from, int to) {
+            this.times = times;
+            this.buckets = buckets;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected CommitStatsAccumulator compute() {
+            if (to - from <= CHUNK) {
+                CommitStatsAccumulator stats = new CommitStatsAccumulator(buckets);
+                stats.addAll(times, from, to);
+                return stats;
+            }
+            int middle = (from + to) >>> 1;
+            Part right = new Part(times, buckets, middle, to);
+            right.fork();
+            CommitStatsAccumulator left = new Part(times, buckets, from, middle).compute();
+            left.merge(right.join());
+            return left;
+        }
+    }
+
+    public CommitStats getResult() {
+        return new CommitStats(commitCount, days.clone(), months.clone(), hours.clone(), firstCommit, lastCommit);
+    }
+}
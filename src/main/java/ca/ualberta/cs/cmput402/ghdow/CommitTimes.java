@@ -0,0 +1,99 @@
+package ca.ualberta.cs.cmput402.ghdow;
+
+import org.kohsuke.github.GHCommit;
+import org.kohsuke.github.GHRepository;
+
+import java.io.IOException;
+import java.util.*;
+
+// Commit dates (epoch millis) and the repository each commit came from,
+// kept in primitive arrays instead of holding on to every GHCommit
+public class CommitTimes {
+    private static final int INITIAL_CAPACITY = 64;
+
+    private long[] times = new long[INITIAL_CAPACITY];
+    private int[] repoIds = new int[INITIAL_CAPACITY];
+    private int size;
+    private final List<String> repoNames = new ArrayList<>();
+    private final Map<String, Integer> repoIndex = new HashMap<>();
+
+    public static CommitTimes of(Iterable<? extends GHCommit> commits) throws IOException {
+        CommitTimes result = new CommitTimes();
+        for (GHCommit commit : commits) {
+            GHRepository owner = commit.getOwner();
+            int repoId = result.repoId(owner == null ? "" : owner.getName());
+            result.add(commit.getCommitDate().getTime(), repoId);
+        }
+        return result;
+    }
+
+    // Repositories are numbered in the order we first see them
+    public int repoId(String repoName) {
+        Integer id = repoIndex.get(repoName);
+        if (id == null) {
+            id = repoNames.size();
+            repoNames.add(repoName);
+            repoIndex.put(repoName, id);
+        }
+        return id;
+    }
+
+    public void add(long time, int repoId) {
+        if (repoId < 0 || repoId >= repoNames.size()) {
+            throw new IllegalArgumentException("Not a repository: " + repoId);
+        }
+        if (size == times.length) {
+            // trimToSize() may have left no room at all
+            int capacity = Math.max(INITIAL_CAPACITY, size * 2);
+            times = Arrays.copyOf(times, capacity);
+            repoIds = Arrays.copyOf(repoIds, capacity);
+        }
+        times[size] = time;
+        repoIds[size] = repoId;
+        size++;
+    }
+
+    public void addAll(String repoName, long[] repoTimes) {
+        int repoId = repoId(repoName);
+        for (long time : repoTimes) {
+            add(time, repoId);
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long getTime(int i) {
+        return times[checkIndex(i)];
+    }
+
+    public int getRepoId(int i) {
+        return repoIds[checkIndex(i)];
+    }
+
+    public int getRepoCount() {
+        return repoNames.size();
+    }
+
+    public String getRepoName(int repoId) {
+        return repoNames.get(repoId);
+    }
+
+    public long[] toArray() {
+        return Arrays.copyOf(times, size);
+    }
+
+    // Drops the spare capacity once loading is done
+    public void trimToSize() {
+        times = Arrays.copyOf(times, size);
+        repoIds = Arrays.copyOf(repoIds, size);
+    }
+
+    private int checkIndex(int i) {
+        if (i < 0 || i >= size) {
+            throw new IndexOutOfBoundsException("Index " + i + " out of bounds for size " + size);
+        }
+        return i;
+    }
+}
@@ -0,0 +1,307 @@
+package ca.ualberta.cs.cmput402.ghdow;
+
+import org.kohsuke.github.connector.GitHubConnector;
+import org.kohsuke.github.connector.GitHubConnectorRequest;
+import org.kohsuke.github.connector.GitHubConnectorResponse;
+
+import java.io.*;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.stream.Stream;
+
+// Remembers GET responses on disk along with their ETag and asks GitHub
+// "If-None-Match" next time. A 304 doesn't count against the rate limit,
+// and we answer it with the body we saved. Least recently used responses
+// are deleted once the cache grows past maxBytes.
+public class ConditionalRequestCache implements GitHubConnector {
+    private static final int MAGIC = 0x67686563; // "ghec"
+    private static final String SUFFIX = ".response";
+
+    private final GitHubConnector delegate;
+    private final Path dir;
+    private final long maxBytes;
+    // Cache key -> file size, least recently used first
+    private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes;
+
+    public ConditionalRequestCache(GitHubConnector delegate, Path dir, long maxBytes) throws IOException {
+        this.delegate = delegate;
+        this.dir = dir;
+        this.maxBytes = maxBytes;
+        Files.createDirectories(dir);
+        // Pick up responses saved by earlier runs, oldest use first
+        List<Path> files;
+        try (Stream<Path> listing = Files.list(dir)) {
+            files = new ArrayList<>(listing.filter(f -> f.toString().endsWith(SUFFIX)).toList());
+        }
+        files.sort(Comparator.comparing(ConditionalRequestCache::lastModified));
+        for (Path file : files) {
+            String name = file.getFileName().toString();
+            long size = Files.size(file);
+            entries.put(name.substring(0, name.length() - SUFFIX.length()), size);
+            totalBytes += size;
+        }
+        evict();
+    }
+
+    public static Path defaultDir() {
+        return Path.of(System.getProperty("user.home"), ".ghdow", "responses");
+    }
+
+    @Override
+    public GitHubConnectorResponse send(GitHubConnectorRequest request) throws IOException {
+        if (!"GET".equals(request.method())) {
+            return delegate.send(request);
+        }
+        String key = key(request);
+        Saved saved = read(key);
+        GitHubConnectorResponse response = delegate.send(saved == null ? request : new Conditional(request, saved.etag));
+
+        if (saved != null && response.statusCode() == 304) {
+            // The 304 carries the current rate limit headers, the rest comes from the saved response
+            Map<String, List<String>> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+            headers.putAll(saved.headers);
+            copyHeaders(response.allHeaders(), headers);
+            response.close();
+            touch(key);
+            return new Replayed(request, headers, saved.body, true);
+        }
+
+        String etag = response.header("ETag");
+        if (response.statusCode() != 200 || etag == null) {
+            return response;
+        }
+        byte[] body;
+        try (InputStream in = response.bodyStream()) {
+            body = in.readAllBytes();
+        }
+        Map<String, List<String>> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        copyHeaders(response.allHeaders(), headers);
+        response.close();
+        write(key, new Saved(etag, headers, body));
+        return new Replayed(request, headers, body, false);
+    }
+
+    // True if GitHub answered 304 and the body is the one we saved, not one it sent
+    static boolean isFromCache(GitHubConnectorResponse response) {
+        return response instanceof Replayed && ((Replayed) response).fromDisk;
+    }
+
+    public synchronized long getTotalBytes() {
+        return totalBytes;
+    }
+
+    public synchronized int getEntryCount() {
+        return entries.size();
+    }
+
+    // Body bytes are stored decoded, so the encoding and length headers no longer apply
+    private static void copyHeaders(Map<String, List<String>> from, Map<String, List<String>> to) {
+        for (Map.Entry<String, List<String>> header : from.entrySet()) {
+            String name = header.getKey();
+            if (name != null
+                    && !name.equalsIgnoreCase("Content-Encoding")
+                    && !name.equalsIgnoreCase("Content-Length")) {
+                to.put(name, header.getValue());
+            }
+        }
+    }
+
+    // Different tokens can see different data at the same URL, so they get different entries
+    private static String key(GitHubConnectorRequest request) {
+        String id = request.url() + "\n" + request.header("Authorization") + "\n" + request.header("Accept");
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(id.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private Path file(String key) {
+        return dir.resolve(key + SUFFIX);
+    }
+
+    private Saved read(String key) {
+        synchronized (this) {
+            if (!entries.containsKey(key)) return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file(key))))) {
+            if (in.readInt() != MAGIC) return null;
+            String etag = in.readUTF();
+            Map<String, List<String>> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+            int headerCount = in.readInt();
+            for (int i = 0; i < headerCount; i++) {
+                String name = in.readUTF();
+                List<String> values = new ArrayList<>();
+                int valueCount = in.readInt();
+                for (int j = 0; j < valueCount; j++) {
+                    values.add(in.readUTF());
+                }
+                headers.put(name, values);
+            }
+            byte[] body = new byte[in.readInt()];
+            in.readFully(body);
+            return new Saved(etag, headers, body);
+        } catch (IOException e) {
+            // Treat a damaged or vanished entry as a miss
+            remove(key);
+            return null;
+        }
+    }
+
+    private void write(String key, Saved saved) throws IOException {
+        if (saved.body.length > maxBytes) return;
+        Path tmp = Files.createTempFile(dir, key, ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+            out.writeInt(MAGIC);
+            out.writeUTF(saved.etag);
+            out.writeInt(saved.headers.size());
+            for (Map.Entry<String, List<String>> header : saved.headers.entrySet()) {
+                out.writeUTF(header.getKey());
+                out.writeInt(header.getValue().size());
+                for (String value : header.getValue()) {
+                    out.writeUTF(value);
+                }
+            }
+            out.writeInt(saved.body.length);
+            out.write(saved.body);
+        }
+        long size = Files.size(tmp);
+        synchronized (this) {
+            Files.move(tmp, file(key), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            Long old = entries.put(key, size);
+            totalBytes += size - (old == null ? 0 : old);
+            evict();
+        }
+    }
+
+    private synchronized void touch(String key) {
+        entries.get(key);
+        try {
+            Files.setLastModifiedTime(file(key), FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException e) {
+            // Only affects eviction order in later runs
+        }
+    }
+
+    private synchronized void remove(String key) {
+        Long size = entries.remove(key);
+        if (size != null) {
+            totalBytes -= size;
+        }
+        try {
+            Files.deleteIfExists(file(key));
+        } catch (IOException e) {
+            System.err.println("Could not delete cached response " + key + ": " + e.getMessage());
+        }
+    }
+
+    private synchronized void evict() {
+        Iterator<String> oldest = entries.keySet().iterator();
+        while (totalBytes > maxBytes && oldest.hasNext()) {
+            String key = oldest.next();
+            totalBytes -= entries.get(key);
+            oldest.remove();
+            try {
+                Files.deleteIfExists(file(key));
+            } catch (IOException e) {
+                System.err.println("Could not delete cached response " + key + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private static FileTime lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+
+    private static class Saved {
+        final String etag;
+        final Map<String, List<String>> headers;
+        final byte[] body;
+
+        Saved(String etag, Map<String, List<String>> headers, byte[] body) {
+            this.etag = etag;
+            this.headers = headers;
+            this.body = body;
+        }
+    }
+
+    // The original request plus If-None-Match
+    private static class Conditional implements GitHubConnectorRequest {
+        private final GitHubConnectorRequest request;
+        private final String etag;
+
+        Conditional(GitHubConnectorRequest request, String etag) {
+            this.request = request;
+            this.etag = etag;
+        }
+
+        @Override
+        public String method() {
+            return request.method();
+        }
+
+        @Override
+        public Map<String, List<String>> allHeaders() {
+            Map<String, List<String>> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+            headers.putAll(request.allHeaders());
+            headers.put("If-None-Match", List.of(etag));
+            return headers;
+        }
+
+        @Override
+        public String header(String name) {
+            return name.equalsIgnoreCase("If-None-Match") ? etag : request.header(name);
+        }
+
+        @Override
+        public String contentType() {
+            return request.contentType();
+        }
+
+        @Override
+        public InputStream body() {
+            return request.body();
+        }
+
+        @Override
+        public URL url() {
+            return request.url();
+        }
+
+        @Override
+        public boolean hasBody() {
+            return request.hasBody();
+        }
+    }
+
+    private static class Replayed extends GitHubConnectorResponse {
+        private final byte[] body;
+        private final boolean fromDisk;
+
+        Replayed(GitHubConnectorRequest request, Map<String, List<String>> headers, byte[] body, boolean fromDisk) {
+            super(request, 200, headers);
+            this.body = body;
+            this.fromDisk = fromDisk;
+        }
+
+        @Override
+        protected InputStream rawBodyStream() {
+            return new ByteArrayInputStream(body);
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package ca.ualberta.cs.cmput402.ghdow;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+// Minimal client for GitHub's GraphQL API. GraphQL has a rate limit of its
+// own, so it gets its own RequestScheduler rather than sharing the REST one.
+public class GraphQLClient {
+    public static final String GITHUB_ENDPOINT = "https://api.github.com/graphql";
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final int MAX_ATTEMPTS = 5;
+    private static final String METRICS_ENDPOINT = "POST /graphql";
+
+    private final URI endpoint;
+    private final String token;
+    private final HttpClient http;
+    private final RequestScheduler scheduler = new RequestScheduler();
+    private RequestMetrics metrics;
+
+    public GraphQLClient(String token) {
+        this(token, GITHUB_ENDPOINT, HttpClient.newHttpClient());
+    }
+
+    public GraphQLClient(String token, String endpoint, HttpClient http) {
+        this.endpoint = URI.create(endpoint);
+        this.token = token;
+        this.http = http;
+    }
+
+    public void setMetrics(RequestMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    // Returns the "data" of the response. Errors that come with data (for
+    // example fields we aren't allowed to see) are only reported.
+    public JsonNode query(String query, Map<String, String> variables) throws IOException {
+        ObjectNode body = MAPPER.createObjectNode();
+        body.put("query", query);
+        ObjectNode vars = body.putObject("variables");
+        variables.forEach(vars::put);
+        HttpRequest request = HttpRequest.newBuilder(endpoint)
+                .header("Authorization", "bearer " + token)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(MAPPER.writeValueAsBytes(body)))
+                .build();
+
+        for (int attempt = 0; ; attempt++) {
+            scheduler.acquire();
+            HttpResponse<byte[]> response = send(request);
+            long retryIn = scheduler.onResponse(response.statusCode(), response.headers().map(), attempt);
+            if (retryIn >= 0 && attempt + 1 < MAX_ATTEMPTS) {
+                if (metrics != null) {
+                    metrics.recordRetry(METRICS_ENDPOINT);
+                }
+                RequestScheduler.sleep(retryIn);
+                continue;
+            }
+            if (response.statusCode() != 200) {
+                throw new IOException("GraphQL request failed with HTTP " + response.statusCode() + ": "
+                        + new String(response.body(), StandardCharsets.UTF_8));
+            }
+            JsonNode result = MAPPER.readTree(response.body());
+            JsonNode data = result.path("data");
+            if (data.isMissingNode() || data.isNull()) {
+                throw new IOException("GraphQL request failed: " + result.path("errors"));
+            }
+            if (result.has("errors")) {
+                System.err.println("GraphQL returned partial results: " + result.path("errors"));
+            }
+            return data;
+        }
+    }
+
+    private HttpResponse<byte[]> send(HttpRequest request) throws IOException {
+        long start = System.nanoTime();
+        HttpResponse<byte[]> response;
+        try {
+            response = http.send(request, HttpResponse.BodyHandlers.ofByteArray());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while calling GitHub GraphQL");
+        } catch (IOException e) {
+            if (metrics != null) {
+                metrics.recordRequest(METRICS_ENDPOINT, System.nanoTime() - start, true);
+            }
+            throw e;
+        }
+        if (metrics != null) {
+            metrics.recordRequest(METRICS_ENDPOINT, System.nanoTime() - start, response.statusCode() >= 400);
+            metrics.recordBytes(METRICS_ENDPOINT, response.body().length);
+            metrics.recordRateLimitRemaining(response.headers().firstValue("X-RateLimit-Remaining").orElse(null));
+        }
+        return response;
+    }
+}
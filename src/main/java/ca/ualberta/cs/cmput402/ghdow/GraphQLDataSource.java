@@ -0,0 +1,113 @@
+package ca.ualberta.cs.cmput402.ghdow;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+
+// Fetches open issues, collaborators and closed pull requests for 100
+// repositories per GraphQL query, instead of one REST call (or more) per
+// repository. Only repositories with more than 100 closed pull requests
+// need follow-up queries, and none past the pull request window.
+public class GraphQLDataSource {
+    static final String REPOSITORIES_QUERY = """
+            query($cursor: String) {
+              viewer {
+                repositories(first: 100, after: $cursor,
+                             ownerAffiliations: [OWNER, COLLABORATOR, ORGANIZATION_MEMBER]) {
+                  pageInfo { hasNextPage endCursor }
+                  nodes {
+                    id
+                    issues(states: OPEN) { totalCount }
+                    openPullRequests: pullRequests(states: OPEN) { totalCount }
+                    collaborators { totalCount }
+                    closedPullRequests: pullRequests(states: [CLOSED, MERGED], first: 100,
+                                                      orderBy: {field: UPDATED_AT, direction: DESC}) {
+                      pageInfo { hasNextPage endCursor }
+                      nodes { createdAt closedAt updatedAt }
+                    }
+                  }
+                }
+              }
+            }""";
+
+    static final String PULL_REQUESTS_QUERY = """
+            query($id: ID!, $cursor: String) {
+              node(id: $id) {
+                ... on Repository {
+                  closedPullRequests: pullRequests(states: [CLOSED, MERGED], first: 100, after: $cursor,
+                                                    orderBy: {field: UPDATED_AT, direction: DESC}) {
+                    pageInfo { hasNextPage endCursor }
+                    nodes { createdAt closedAt updatedAt }
+                  }
+                }
+              }
+            }""";
+
+    private final GraphQLClient client;
+
+    public GraphQLDataSource(GraphQLClient client) {
+        this.client = client;
+    }
+
+    public RepoAggregates fetch() throws IOException {
+        return fetch(Long.MIN_VALUE);
+    }
+
+    // Only counts pull requests closed at or after `since` (epoch millis)
+    public RepoAggregates fetch(long since) throws IOException {
+        RepoAggregates totals = new RepoAggregates();
+        String cursor = null;
+        do {
+            JsonNode repos = client.query(REPOSITORIES_QUERY, variables("cursor", cursor))
+                    .path("viewer").path("repositories");
+            for (JsonNode repo : repos.path("nodes")) {
+                // The REST open issue count includes open pull requests
+                totals.addRepo(repo.path("issues").path("totalCount").asInt()
+                        + repo.path("openPullRequests").path("totalCount").asInt());
+                JsonNode collaborators = repo.path("collaborators");
+                if (!collaborators.isNull() && !collaborators.isMissingNode()) {
+                    totals.addCollaborators(collaborators.path("totalCount").asInt());
+                }
+                addPullRequests(totals, repo.path("id").asText(), repo.path("closedPullRequests"), since);
+            }
+            cursor = nextCursor(repos.path("pageInfo"));
+        } while (cursor != null);
+        return totals;
+    }
+
+    private void addPullRequests(RepoAggregates totals, String repoId, JsonNode pullRequests, long since)
+            throws IOException {
+        while (true) {
+            for (JsonNode pr : pullRequests.path("nodes")) {
+                // Most recently updated first, so the rest are all outside the window
+                String updated = pr.path("updatedAt").textValue();
+                if (updated != null && Instant.parse(updated).toEpochMilli() < since) {
+                    return;
+                }
+                String created = pr.path("createdAt").textValue();
+                String closed = pr.path("closedAt").textValue();
+                if (created != null && closed != null && Instant.parse(closed).toEpochMilli() >= since) {
+                    totals.addPullRequest(Instant.parse(created).toEpochMilli(), Instant.parse(closed).toEpochMilli());
+                }
+            }
+            String cursor = nextCursor(pullRequests.path("pageInfo"));
+            if (cursor == null) return;
+            Map<String, String> variables = variables("cursor", cursor);
+            variables.put("id", repoId);
+            pullRequests = client.query(PULL_REQUESTS_QUERY, variables).path("node").path("closedPullRequests");
+        }
+    }
+
+    private static String nextCursor(JsonNode pageInfo) {
+        return pageInfo.path("hasNextPage").asBoolean() ? pageInfo.path("endCursor").asText() : null;
+    }
+
+    private static Map<String, String> variables(String name, String value) {
+        Map<String, String> variables = new HashMap<>();
+        variables.put(name, value);
+        return variables;
+    }
+}
@@ -0,0 +1,84 @@
+package ca.ualberta.cs.cmput402.ghdow;
+
+import org.kohsuke.github.GHEmail;
+import org.kohsuke.github.GHMyself;
+import org.kohsuke.github.GHPerson;
+
+import java.io.IOException;
+import java.util.*;
+
+// Who we're logged in as, looked up once and shared by all the metrics.
+// The emails cost a request of their own, so they're only read once
+// something asks for them.
+public class Identity {
+    interface EmailSource {
+        List<String> load() throws IOException;
+    }
+
+    private final String login;
+    private final long id;
+    private final EmailSource emailSource;
+    private Set<String> emails;
+    private final long resolvedAt;
+
+    public Identity(String login, long id, Collection<String> emails, long resolvedAt) {
+        this(login, id, () -> new ArrayList<>(emails), resolvedAt);
+    }
+
+    Identity(String login, long id, EmailSource emailSource, long resolvedAt) {
+        this.login = login;
+        this.id = id;
+        this.emailSource = emailSource;
+        this.resolvedAt = resolvedAt;
+    }
+
+    public static Identity of(GHPerson person) throws IOException {
+        EmailSource emails = () -> {
+            List<String> result = new ArrayList<>();
+            if (person instanceof GHMyself) {
+                for (GHEmail email : ((GHMyself) person).getEmails2()) {
+                    result.add(email.getEmail());
+                }
+            }
+            return result;
+        };
+        return new Identity(person.getLogin(), person.getId(), emails, System.currentTimeMillis());
+    }
+
+    public String getLogin() {
+        return login;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public synchronized Set<String> getEmails() {
+        if (emails == null) {
+            Set<String> all = new LinkedHashSet<>();
+            try {
+                for (String email : emailSource.load()) {
+                    all.add(email.toLowerCase(Locale.ROOT));
+                }
+            } catch (IOException e) {
+                // Tokens without the user:email scope can't list emails
+                System.err.println("Could not read emails: " + e.getMessage());
+            }
+            // Commits made through the web UI use the noreply addresses
+            if (id > 0) {
+                all.add(id + "+" + login.toLowerCase(Locale.ROOT) + "@users.noreply.github.com");
+            }
+            all.add(login.toLowerCase(Locale.ROOT) + "@users.noreply.github.com");
+            emails = Collections.unmodifiableSet(all);
+        }
+        return emails;
+    }
+
+    public boolean hasEmail(String email) {
+        return email != null && getEmails().contains(email.toLowerCase(Locale.ROOT));
+    }
+
+    public boolean isExpired(long ttlMillis) {
+        return System.currentTimeMillis() - resolvedAt >= ttlMillis;
+    }
+}
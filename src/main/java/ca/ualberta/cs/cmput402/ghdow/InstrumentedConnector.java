@@ -0,0 +1,107 @@
+package ca.ualberta.cs.cmput402.ghdow;
+
+import org.kohsuke.github.connector.GitHubConnector;
+import org.kohsuke.github.connector.GitHubConnectorRequest;
+import org.kohsuke.github.connector.GitHubConnectorResponse;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Records every request that reaches GitHub into RequestMetrics. Latency is
+// until the response headers arrive; bytes are counted as the body is read,
+// separately when a ConditionalRequestCache answered a 304 from disk.
+public class InstrumentedConnector implements GitHubConnector {
+    private final GitHubConnector delegate;
+    private final RequestMetrics metrics;
+
+    public InstrumentedConnector(GitHubConnector delegate, RequestMetrics metrics) {
+        this.delegate = delegate;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public GitHubConnectorResponse send(GitHubConnectorRequest request) throws IOException {
+        String endpoint = RequestMetrics.endpoint(request.method(), request.url());
+        long start = System.nanoTime();
+        GitHubConnectorResponse response;
+        try {
+            response = delegate.send(request);
+        } catch (IOException | RuntimeException e) {
+            metrics.recordRequest(endpoint, System.nanoTime() - start, true);
+            throw e;
+        }
+        metrics.recordRequest(endpoint, System.nanoTime() - start, response.statusCode() >= 400);
+        metrics.recordRateLimitRemaining(response.header("X-RateLimit-Remaining"));
+        return new Counted(response, endpoint);
+    }
+
+    // Hands out the delegate's (already decoded) body, counting as it goes
+    private class Counted extends GitHubConnectorResponse {
+        private final GitHubConnectorResponse response;
+        private final String endpoint;
+        private final boolean cached;
+
+        Counted(GitHubConnectorResponse response, String endpoint) {
+            super(response.request(), response.statusCode(), decodedHeaders(response.allHeaders()));
+            this.response = response;
+            this.endpoint = endpoint;
+            this.cached = ConditionalRequestCache.isFromCache(response);
+        }
+
+        private void count(long bytes) {
+            if (cached) {
+                metrics.recordCachedBytes(endpoint, bytes);
+            } else {
+                metrics.recordBytes(endpoint, bytes);
+            }
+        }
+
+        @Override
+        protected InputStream rawBodyStream() throws IOException {
+            InputStream body = response.bodyStream();
+            if (body == null) {
+                return null;
+            }
+            return new FilterInputStream(body) {
+                @Override
+                public int read() throws IOException {
+                    int b = super.read();
+                    if (b >= 0) {
+                        count(1);
+                    }
+                    return b;
+                }
+
+                @Override
+                public int read(byte[] buffer, int offset, int length) throws IOException {
+                    int n = super.read(buffer, offset, length);
+                    if (n > 0) {
+                        count(n);
+                    }
+                    return n;
+                }
+            };
+        }
+
+        @Override
+        public void close() throws IOException {
+            response.close();
+        }
+    }
+
+    // bodyStream() has already undone any compression, so don't let it happen twice
+    private static Map<String, List<String>> decodedHeaders(Map<String, List<String>> headers) {
+        Map<String, List<String>> result = new LinkedHashMap<>();
+        headers.forEach((name, values) -> {
+            if (name != null && !name.equalsIgnoreCase("Content-Encoding")
+                    && !name.equalsIgnoreCase("Content-Length")) {
+                result.put(name, values);
+            }
+        });
+        return result;
+    }
+}
@@ -0,0 +1,135 @@
+package ca.ualberta.cs.cmput402.ghdow;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+// Streaming quantile sketch (Karnin, Lang and Liberty's KLL). Holds about
+// 3k values however many are added, and answers quantiles to within a rank
+// error of getNormalizedRankError(). Values enter at level 0; a full level
+// is sorted and every other value (from a random start) moves up a level,
+// where it stands for twice as many values.
+public class KllSketch {
+    private static final double CAPACITY_SHRINK = 2.0 / 3.0;
+
+    private final int k;
+    private final Random random;
+    private final List<double[]> levels = new ArrayList<>();
+    private int[] sizes = new int[0];
+    private int[] capacities = new int[0];
+    private long count;
+
+    public KllSketch(int k) {
+        this(k, new Random());
+    }
+
+    public KllSketch(int k, Random random) {
+        if (k < 8) {
+            throw new IllegalArgumentException("Not a valid sketch size: " + k);
+        }
+        this.k = k;
+        this.random = random;
+        addLevel();
+    }
+
+    // Rank error for a single quantile, with 99% confidence (as measured for DataSketches' KLL)
+    public static double getNormalizedRankError(int k) {
+        return 2.296 / Math.pow(k, 0.9723);
+    }
+
+    public double getNormalizedRankError() {
+        return getNormalizedRankError(k);
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    // How many values the sketch holds, which stays around 3k
+    public int getRetainedCount() {
+        int total = 0;
+        for (int size : sizes) {
+            total += size;
+        }
+        return total;
+    }
+
+    public void add(double value) {
+        count++;
+        levels.get(0)[sizes[0]++] = value;
+        // A new level shrinks the ones below it, so any of them can be full
+        for (int h = 0; h < levels.size(); h++) {
+            if (sizes[h] >= capacities[h]) {
+                compact(h);
+            }
+        }
+    }
+
+    private void addLevel() {
+        int height = levels.size() + 1;
+        capacities = new int[height];
+        // Lower levels get less room than the top one, which gets k
+        for (int h = 0; h < height; h++) {
+            capacities[h] = Math.max(2, (int) Math.ceil(k * Math.pow(CAPACITY_SHRINK, height - 1 - h)));
+        }
+        sizes = Arrays.copyOf(sizes, height);
+        for (int h = 0; h < levels.size(); h++) {
+            if (levels.get(h).length < capacities[h]) {
+                levels.set(h, Arrays.copyOf(levels.get(h), capacities[h]));
+            }
+        }
+        levels.add(new double[capacities[height - 1]]);
+    }
+
+    private void compact(int h) {
+        if (h + 1 == levels.size()) {
+            addLevel();
+        }
+        double[] items = levels.get(h);
+        int size = sizes[h];
+        Arrays.sort(items, 0, size);
+        // An odd one out stays behind
+        int keep = size % 2;
+        int offset = random.nextBoolean() ? 1 : 0;
+        double[] up = levels.get(h + 1);
+        for (int i = keep + offset; i < size; i += 2) {
+            if (sizes[h + 1] == up.length) {
+                up = Arrays.copyOf(up, up.length * 2);
+                levels.set(h + 1, up);
+            }
+            up[sizes[h + 1]++] = items[i];
+        }
+        sizes[h] = keep;
+    }
+
+    // The value with about `fraction` of everything added below it
+    public double getQuantile(double fraction) {
+        if (count == 0) {
+            return Double.NaN;
+        }
+        int total = getRetainedCount();
+        double[] values = new double[total];
+        long[] weights = new long[total];
+        Integer[] order = new Integer[total];
+        int i = 0;
+        for (int h = 0; h < levels.size(); h++) {
+            for (int j = 0; j < sizes[h]; j++) {
+                values[i] = levels.get(h)[j];
+                weights[i] = 1L << h;
+                order[i] = i;
+                i++;
+            }
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(values[a], values[b]));
+        double target = fraction * count;
+        long seen = 0;
+        for (int index : order) {
+            seen += weights[index];
+            if (seen >= target) {
+                return values[index];
+            }
+        }
+        return values[order[total - 1]];
+    }
+}
@@ -1,11 +1,34 @@
 package ca.ualberta.cs.cmput402.ghdow;
 
+import org.kohsuke.github.connector.GitHubConnector;
+import org.kohsuke.github.extras.HttpClientGitHubConnector;
+
 import java.io.IOException;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.net.http.HttpClient;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.DayOfWeek;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.TextStyle;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class Main {
+    // Everything but open issues
+    static final Set<Metric> DEFAULT_METRICS = EnumSet.complementOf(EnumSet.of(Metric.AVERAGE_OPEN_ISSUES));
+
     static String getOAuthToken() throws IOException {
         Path tokenFile = Paths.get(
                 System.getProperty("user.home"),
@@ -14,16 +37,208 @@ public class Main {
         String token = Files.readString(tokenFile);
         return token.strip();
     }
+
+    // Options look like --name=value, a bare --name is the same as --name=true
+    static Map<String, String> getOptions(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--")) {
+                throw new IllegalArgumentException("Not an option: " + arg);
+            }
+            int eq = arg.indexOf('=');
+            if (eq < 0) {
+                options.put(arg.substring(2), "true");
+            } else {
+                options.put(arg.substring(2, eq), arg.substring(eq + 1));
+            }
+        }
+        return options;
+    }
+
+    // What every MyGithub of a run shares: one HttpClient, so connections
+    // (and TLS handshakes) are reused, the connector, the request metrics and
+    // the collaborator counts
+    static class Shared {
+        final HttpClient http = HttpClient.newHttpClient();
+        final RequestMetrics metrics = new RequestMetrics();
+        final GitHubConnector connector;
+        final CollaboratorCounts collaboratorCounts = new CollaboratorCounts(60 * 60 * 1000);
+        RepoDataStore repoDataStore;
+
+        Shared(Map<String, String> options) throws IOException {
+            GitHubConnector connector = new HttpClientGitHubConnector(http);
+            if (options.containsKey("response-cache")) {
+                String dir = options.get("response-cache");
+                long maxMegabytes = Long.parseLong(options.getOrDefault("response-cache-mb", "100"));
+                connector = new ConditionalRequestCache(
+                        connector,
+                        dir.equals("true") ? ConditionalRequestCache.defaultDir() : Paths.get(dir),
+                        maxMegabytes * 1024 * 1024);
+            }
+            this.connector = connector;
+        }
+    }
+
+    static MyGithub createMyGithub(String token, Shared shared, Map<String, String> options) throws IOException {
+        // --endpoint=URL points us at another REST API root, such as a FakeGitHub
+        String endpoint = options.getOrDefault("endpoint", MyGithub.GITHUB_ENDPOINT);
+        MyGithub my = new MyGithub(token, endpoint, shared.connector, new RequestScheduler(), shared.metrics);
+        if (options.containsKey("graphql")) {
+            GraphQLClient client = new GraphQLClient(token, GraphQLClient.GITHUB_ENDPOINT, shared.http);
+            client.setMetrics(shared.metrics);
+            my.setGraphQL(new GraphQLDataSource(client));
+        }
+        my.setFetchConcurrency(Integer.parseInt(options.getOrDefault("concurrency", "1")));
+        my.setCollaboratorCounts(shared.collaboratorCounts);
+        if (options.containsKey("zone")) {
+            my.setZone(ZoneId.of(options.get("zone")));
+        }
+        if (options.containsKey("pr-window-days")) {
+            my.setPullRequestWindow(Duration.ofDays(Long.parseLong(options.get("pr-window-days"))));
+        }
+        // --match-emails lists every commit in each repository, not only ours,
+        // so it costs a request per 100 commits of everyone's
+        boolean matchEmails = options.containsKey("match-emails");
+        my.setMatchAuthorEmails(matchEmails);
+        if (shared.repoDataStore != null) {
+            // The shared repositories replace the per-user commit cache
+            my.setRepoDataStore(shared.repoDataStore);
+        } else if (!options.containsKey("no-commit-cache")) {
+            String login = my.getGithubName();
+            // Matching emails finds more commits, so it can't share a cache with login-only matching
+            String cacheAuthor = matchEmails ? login + "+emails" : login;
+            Path cacheFile = options.containsKey("commit-cache") && !options.containsKey("batch")
+                    ? Paths.get(options.get("commit-cache"))
+                    : CommitCache.defaultFile(cacheAuthor);
+            my.setCommitCache(CommitCache.open(cacheFile, cacheAuthor));
+            // --commit-cache-overlap-days=DAYS looks further back for commits merged from old branches
+            if (options.containsKey("commit-cache-overlap-days")) {
+                my.setCommitCacheOverlap(Duration.ofDays(Long.parseLong(options.get("commit-cache-overlap-days"))));
+            }
+        }
+        return my;
+    }
+
+    // --batch=FILE reports on every user in FILE (see BatchReport.readUsers)
+    // and writes one JSON line per user to --out (report.jsonl by default).
+    // With --shared-repos, repositories shared between users are loaded once
+    // (every author's commits, so only worth it when users share many repositories).
+    static void runBatch(Map<String, String> options, Shared shared) throws IOException {
+        List<BatchReport.User> users = BatchReport.readUsers(Paths.get(options.get("batch")));
+        int parallelUsers = Integer.parseInt(options.getOrDefault("parallel-users", "8"));
+        // Repositories of all users are fetched on one pool
+        ExecutorService fetchPool = Executors.newFixedThreadPool(
+                Integer.parseInt(options.getOrDefault("concurrency", "4")));
+        if (options.containsKey("shared-repos")) {
+            // Every user gets the same --pr-window-days, so the store only loads that much
+            shared.repoDataStore = new RepoDataStore(options.containsKey("pr-window-days")
+                    ? Duration.ofDays(Long.parseLong(options.get("pr-window-days")))
+                    : null);
+        }
+        BatchReport batch = new BatchReport(token -> {
+            MyGithub my = createMyGithub(token, shared, options);
+            my.setFetchExecutor(fetchPool);
+            return my;
+        }, parallelUsers);
+        Path out = Paths.get(options.getOrDefault("out", "report.jsonl"));
+        try (Writer writer = Files.newBufferedWriter(out)) {
+            int failures = batch.run(users, writer);
+            System.out.println("Reported on " + (users.size() - failures) + " of " + users.size()
+                    + " users in " + out);
+        } finally {
+            fetchPool.shutdownNow();
+        }
+    }
+
+    // --serve[=PORT] keeps answering /users/{login}/metrics (port 8080 by
+    // default) for the users in --users=FILE, or just for us without one
+    static void runServer(Map<String, String> options, Shared shared) throws IOException {
+        String port = options.get("serve");
+        MetricsServer server = new MetricsServer(
+                new InetSocketAddress(port.equals("true") ? 8080 : Integer.parseInt(port)),
+                Integer.parseInt(options.getOrDefault("server-threads", "16")));
+        List<BatchReport.User> users = options.containsKey("users")
+                ? BatchReport.readUsers(Paths.get(options.get("users")))
+                : List.of(new BatchReport.User(null, getOAuthToken()));
+        for (BatchReport.User user : users) {
+            MyGithub my = createMyGithub(user.token, shared, options);
+            String login = user.name != null ? user.name : my.getGithubName();
+            server.addUser(login, my);
+            System.out.println("Serving http://localhost:" + server.getPort() + "/users/" + login + "/metrics");
+        }
+        server.start(Long.parseLong(options.getOrDefault("refresh-minutes", "15")) * 60 * 1000);
+    }
+
+    // --activity[=YEAR] prints commits per week of YEAR (this year by
+    // default), streaks and the weekday x hour heatmap from the saved index
+    static void printActivity(MyGithub my, Map<String, String> options) throws IOException {
+        ZoneId zone = options.containsKey("zone") ? ZoneId.of(options.get("zone")) : ZoneId.systemDefault();
+        String login = my.getGithubName();
+        // Matching emails finds more commits, so it gets an index of its own
+        String author = options.containsKey("match-emails") ? login + "+emails" : login;
+        my.setActivityIndex(ActivityIndex.open(ActivityIndex.defaultFile(author), author, zone));
+        ActivityIndex index = my.getActivityIndex();
+
+        LocalDate today = LocalDate.now(zone);
+        String year = options.get("activity");
+        int y = year.equals("true") ? today.getYear() : Integer.parseInt(year);
+        System.out.println("Commits per week in " + y + ": "
+                + Arrays.toString(index.getCounts(LocalDate.of(y, 1, 1), LocalDate.of(y + 1, 1, 1), 7)));
+        System.out.println("Longest streak: " + index.getLongestStreak() + " days");
+        System.out.println("Current streak: " + index.getCurrentStreak(today) + " days");
+        int[][] heatmap = index.getHeatmap();
+        for (DayOfWeek day : DayOfWeek.values()) {
+            StringBuilder row = new StringBuilder(day.getDisplayName(TextStyle.SHORT, Locale.ENGLISH));
+            for (int count : heatmap[day.getValue() - 1]) {
+                row.append(String.format(" %3d", count));
+            }
+            System.out.println(row);
+        }
+    }
+
     public static void main(String[] args) throws IOException {
-        String token = getOAuthToken();
-        MyGithub my = new MyGithub(token);
-        System.out.println("Logged in as " + my.getGithubName());
-        System.out.println("Most often commits on: " + my.getMostPopularDay());
-        System.out.println("Most popular month: " + my.getMostPopularMonth());
-        System.out.println("Avg time between commits: " + my.getAverageTimeBetweenCommits());
-//        System.out.println("Avg open Issues: " + my.getAverageOpenIssues());
-        System.out.println("Avg Pr duration: " + my.getAveragePullRequestDuration());
-        System.out.println("Avg Collaborators: " + my.getAverageCollaborators());
-
-    }
-}
\ No newline at end of file
+        Map<String, String> options = getOptions(args);
+        Shared shared = new Shared(options);
+        // Watch it live in JConsole, and read the summary at the end
+        shared.metrics.register("main");
+        try {
+            if (options.containsKey("batch")) {
+                runBatch(options, shared);
+                return;
+            }
+            if (options.containsKey("serve")) {
+                runServer(options, shared);
+                return;
+            }
+            String token = getOAuthToken();
+            MyGithub my = createMyGithub(token, shared, options);
+            System.out.println("Logged in as " + my.getGithubName());
+            if (options.containsKey("approximate")) {
+                // --approximate[=PAGES] samples PAGES pages per repository (1 by default)
+                String pages = options.get("approximate");
+                ApproximateMetrics approximate = my.getApproximateMetrics(
+                        pages.equals("true") ? 1 : Integer.parseInt(pages));
+                System.out.println("Days between commits, per repository: " + approximate.getCommitGaps());
+                System.out.println("Pr duration in days: " + approximate.getPullRequestDurations());
+                System.out.println("Sampled " + approximate.getPagesFetched() + " pages");
+                return;
+            }
+            if (options.containsKey("activity")) {
+                printActivity(my, options);
+                return;
+            }
+            // --metrics=day,pr-duration,... only loads what those need
+            Set<Metric> metrics = options.containsKey("metrics")
+                    ? Metric.parse(options.get("metrics"))
+                    : DEFAULT_METRICS;
+            for (Map.Entry<Metric, Object> result : my.query(metrics).entrySet()) {
+                System.out.println(result.getKey().getLabel() + ": " + result.getValue());
+            }
+        } finally {
+            // A server keeps running, its metrics are on JMX
+            if (!options.containsKey("quiet-metrics") && !options.containsKey("serve")) {
+                System.err.println(shared.metrics.getSummary());
+            }
+        }
+    }
+}
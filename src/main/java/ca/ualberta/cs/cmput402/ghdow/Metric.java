@@ -0,0 +1,76 @@
+package ca.ualberta.cs.cmput402.ghdow;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+// The metrics MyGithub.query() can compute, each with the data it needs
+public enum Metric {
+    MOST_POPULAR_DAY("day", "Most often commits on", Source.COMMITS,
+            my -> my.getCommitStats().getMostPopularDay()),
+    MOST_POPULAR_MONTH("month", "Most popular month", Source.COMMITS,
+            my -> my.getCommitStats().getMostPopularMonth()),
+    MOST_POPULAR_HOUR("hour", "Most popular hour", Source.COMMITS,
+            my -> my.getCommitStats().getMostPopularHour()),
+    AVERAGE_TIME_BETWEEN_COMMITS("commit-gap", "Avg time between commits", Source.COMMITS,
+            my -> my.getCommitStats().getAverageTimeBetweenCommits()),
+    AVERAGE_OPEN_ISSUES("open-issues", "Avg open Issues", Source.REPOSITORIES,
+            MyGithub::getAverageOpenIssues),
+    AVERAGE_PULL_REQUEST_DURATION("pr-duration", "Avg Pr duration", Source.PULL_REQUESTS,
+            MyGithub::getAveragePullRequestDuration),
+    AVERAGE_COLLABORATORS("collaborators", "Avg Collaborators", Source.COLLABORATORS,
+            MyGithub::getAverageCollaborators);
+
+    // Where a metric's data comes from. Every source starts from the
+    // repository list; apart from that they don't depend on each other.
+    public enum Source { REPOSITORIES, COMMITS, PULL_REQUESTS, COLLABORATORS }
+
+    interface Evaluator {
+        Object evaluate(MyGithub my) throws IOException;
+    }
+
+    private final String cliName;
+    private final String label;
+    private final Source source;
+    private final Evaluator evaluator;
+
+    Metric(String cliName, String label, Source source, Evaluator evaluator) {
+        this.cliName = cliName;
+        this.label = label;
+        this.source = source;
+        this.evaluator = evaluator;
+    }
+
+    public String getCliName() {
+        return cliName;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    public Source getSource() {
+        return source;
+    }
+
+    Object evaluate(MyGithub my) throws IOException {
+        return evaluator.evaluate(my);
+    }
+
+    // "day,pr-duration" and the like, as given to --metrics
+    public static Set<Metric> parse(String names) {
+        Set<Metric> metrics = EnumSet.noneOf(Metric.class);
+        for (String name : names.split(",")) {
+            String trimmed = name.trim();
+            if (trimmed.isEmpty()) continue;
+            metrics.add(Arrays.stream(values())
+                    .filter(metric -> metric.cliName.equals(trimmed))
+                    .findFirst()
+                    .orElseThrow(() -> new IllegalArgumentException("Unknown metric " + trimmed + ", choose from "
+                            + Arrays.stream(values()).map(Metric::getCliName).collect(Collectors.joining(",")))));
+        }
+        return metrics;
+    }
+}
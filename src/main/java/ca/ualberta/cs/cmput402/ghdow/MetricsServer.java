@@ -0,0 +1,210 @@
+package ca.ualberta.cs.cmput402.ghdow;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Serves GET /users/{login}/metrics[?metrics=day,pr-duration] as JSON from
+// MyGithub instances that stay loaded between requests. A metric is computed
+// the first time someone asks for it and then kept up to date in the
+// background, so later requests are answered from memory.
+public class MetricsServer {
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final HttpServer server;
+    private final ExecutorService handlers;
+    private final ScheduledExecutorService refresher = Executors.newSingleThreadScheduledExecutor();
+    private final ConcurrentMap<String, User> users = new ConcurrentHashMap<>();
+
+    static class User {
+        final MyGithub my;
+        // Replaced whole and never changed, so requests read it without a lock
+        volatile Snapshot snapshot = new Snapshot(Map.of(), null);
+        // MyGithub isn't thread-safe, so loads of missing metrics and refreshes
+        // take turns; requests for metrics we already have don't wait for either
+        private final Object lock = new Object();
+
+        User(MyGithub my) {
+            this.my = my;
+        }
+
+        // Straight from the snapshot when it has every metric, even while a refresh is running
+        Snapshot get(Set<Metric> metrics) throws IOException {
+            Snapshot current = snapshot;
+            if (current.values.keySet().containsAll(metrics)) return current;
+            synchronized (lock) {
+                current = snapshot;
+                Set<Metric> missing = EnumSet.copyOf(metrics);
+                missing.removeAll(current.values.keySet());
+                if (missing.isEmpty()) return current;
+                snapshot = current.with(my.query(missing));
+                return snapshot;
+            }
+        }
+
+        // Reloads everything asked for so far into a new map and swaps it in
+        void refresh() throws IOException {
+            synchronized (lock) {
+                Set<Metric> metrics = snapshot.values.keySet();
+                if (metrics.isEmpty()) return;
+                my.refresh();
+                snapshot = snapshot.with(my.query(EnumSet.copyOf(metrics)));
+            }
+        }
+    }
+
+    static class Snapshot {
+        final Map<Metric, Object> values;
+        final Instant updatedAt;
+
+        Snapshot(Map<Metric, Object> values, Instant updatedAt) {
+            this.values = values;
+            this.updatedAt = updatedAt;
+        }
+
+        Snapshot with(Map<Metric, Object> newValues) {
+            Map<Metric, Object> values = new EnumMap<>(Metric.class);
+            values.putAll(this.values);
+            values.putAll(newValues);
+            return new Snapshot(Collections.unmodifiableMap(values), Instant.now());
+        }
+    }
+
+    // The handler threads do the (blocking) loading of a user's first request,
+    // so have enough of them for the users that will start at the same time
+    public MetricsServer(InetSocketAddress address, int threads) throws IOException {
+        server = HttpServer.create(address, 0);
+        handlers = Executors.newFixedThreadPool(threads);
+        server.setExecutor(handlers);
+        server.createContext("/users/", this::handle);
+    }
+
+    public void addUser(String login, MyGithub my) {
+        users.put(login, new User(my));
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public void start(long refreshMillis) {
+        server.start();
+        refresher.scheduleWithFixedDelay(this::refreshAll, refreshMillis, refreshMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public void stop() {
+        server.stop(0);
+        refresher.shutdownNow();
+        handlers.shutdownNow();
+    }
+
+    // Reloads whatever each user has been asked for so far
+    void refreshAll() {
+        for (Map.Entry<String, User> entry : users.entrySet()) {
+            try {
+                entry.getValue().refresh();
+            } catch (IOException | RuntimeException e) {
+                // Keep serving what we had, and try again next time
+                System.err.println("Could not refresh " + entry.getKey() + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            String[] path = exchange.getRequestURI().getPath().split("/");
+            if (!exchange.getRequestMethod().equals("GET")) {
+                respond(exchange, 405, error("Only GET is supported"));
+                return;
+            }
+            if (path.length != 4 || !path[3].equals("metrics")) {
+                respond(exchange, 404, error("Not found, try /users/{login}/metrics"));
+                return;
+            }
+            String login = URLDecoder.decode(path[2], StandardCharsets.UTF_8);
+            User user = users.get(login);
+            if (user == null) {
+                respond(exchange, 404, error("Unknown user " + login));
+                return;
+            }
+            Set<Metric> metrics;
+            try {
+                String names = queryParameter(exchange, "metrics");
+                metrics = names == null ? Main.DEFAULT_METRICS : Metric.parse(names);
+            } catch (IllegalArgumentException e) {
+                respond(exchange, 400, error(e.getMessage()));
+                return;
+            }
+            Snapshot snapshot;
+            try {
+                snapshot = user.get(metrics);
+            } catch (IOException e) {
+                respond(exchange, 502, error("GitHub: " + e.getMessage()));
+                return;
+            } catch (RuntimeException e) {
+                // HttpServer would just drop the connection
+                System.err.println("Could not load " + login + ": " + e);
+                respond(exchange, 500, error(String.valueOf(e)));
+                return;
+            }
+            respond(exchange, 200, json(login, snapshot, metrics));
+        }
+    }
+
+    private static ObjectNode json(String login, Snapshot snapshot, Set<Metric> metrics) {
+        ObjectNode json = MAPPER.createObjectNode();
+        json.put("login", login);
+        json.put("updatedAt", String.valueOf(snapshot.updatedAt));
+        ObjectNode values = json.putObject("metrics");
+        for (Metric metric : metrics) {
+            values.putPOJO(metric.getCliName(), snapshot.values.get(metric));
+        }
+        return json;
+    }
+
+    private static ObjectNode error(String message) {
+        ObjectNode json = MAPPER.createObjectNode();
+        json.put("error", message);
+        return json;
+    }
+
+    private static String queryParameter(HttpExchange exchange, String name) {
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query == null) return null;
+        for (String parameter : query.split("&")) {
+            int equals = parameter.indexOf('=');
+            if (equals > 0 && parameter.substring(0, equals).equals(name)) {
+                return URLDecoder.decode(parameter.substring(equals + 1), StandardCharsets.UTF_8);
+            }
+        }
+        return null;
+    }
+
+    private static void respond(HttpExchange exchange, int status, ObjectNode body) throws IOException {
+        byte[] bytes = MAPPER.writeValueAsBytes(body);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
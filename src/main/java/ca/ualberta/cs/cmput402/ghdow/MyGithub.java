@@ -3,16 +3,218 @@ package ca.ualberta.cs.cmput402.ghdow;
 import java.io.IOException;
 
 import org.kohsuke.github.*;
+import org.kohsuke.github.connector.GitHubConnector;
+import org.kohsuke.github.extras.HttpClientGitHubConnector;
 
+import java.io.InterruptedIOException;
+import java.time.Duration;
+import java.time.ZoneId;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongConsumer;
+import java.util.stream.LongStream;
 
 public class MyGithub {
+    // Commits are asked for (and checkpointed) this many at a time, GitHub's maximum
+    private static final int PAGE_SIZE = 100;
+    private static final int CHECKPOINT_PAGES = 10;
+    // Tries per repository before its commits are left out
+    private static final int LOAD_ROUNDS = 3;
+    // Quantiles of approximate metrics are within about 1.3% in rank
+    private static final int SKETCH_SIZE = 200;
+    public static final String GITHUB_ENDPOINT = "https://api.github.com";
+
     protected GitHub gitHub;
+    protected RequestScheduler scheduler;
     protected GHPerson myself;
     protected Map<String, GHRepository> myRepos;
-    private List<GHCommit> myCommits;
+    private CommitTimes myCommitTimes;
+    private CommitStats myCommitStats;
+    private List<String> failedRepos;
+    private final AtomicInteger loadedCommits = new AtomicInteger();
+    // How many repositories we fetch commits from at the same time
+    private int fetchConcurrency = 1;
+    private ExecutorService fetchExecutor;
+    private CommitCache commitCache;
+    private long commitCacheOverlapMillis = 30 * TimeBuckets.MILLIS_PER_DAY;
+    private GraphQLDataSource graphQL;
+    private RepoDataStore repoDataStore;
+    private ActivityIndex activityIndex;
+    private CollaboratorCounts collaboratorCounts = new CollaboratorCounts(60 * 60 * 1000);
+    private Identity identity;
+    private long identityTtlMillis = 60 * 60 * 1000;
+    private boolean matchAuthorEmails;
+    // Only pull requests closed this recently count, or all of them when null
+    private Duration pullRequestWindow;
+    private int issuePageSize = 100;
+    private TimeBuckets timeBuckets = new TimeBuckets(ZoneId.systemDefault());
+    private RepoAggregates myRepoAggregates;
+    private final Object aggregatesLock = new Object();
+
     public MyGithub(String token) throws IOException {
-        gitHub = new GitHubBuilder().withOAuthToken(token).build();
+        this(token, new HttpClientGitHubConnector());
+    }
+
+    // For example a ConditionalRequestCache in front of the usual connector
+    public MyGithub(String token, GitHubConnector connector) throws IOException {
+        this(token, connector, new RequestScheduler());
+    }
+
+    // The scheduler paces every request made with this token, so share it
+    // between everything that uses the same token
+    public MyGithub(String token, GitHubConnector connector, RequestScheduler scheduler) throws IOException {
+        this(token, connector, scheduler, null);
+    }
+
+    // Every request (retries included) is recorded in `metrics` unless it's null
+    public MyGithub(String token, GitHubConnector connector, RequestScheduler scheduler, RequestMetrics metrics)
+            throws IOException {
+        this(token, GITHUB_ENDPOINT, connector, scheduler, metrics);
+    }
+
+    // `endpoint` is the REST API root, e.g. a GitHub Enterprise server or a stand-in for tests
+    public MyGithub(String token, String endpoint, GitHubConnector connector, RequestScheduler scheduler,
+                    RequestMetrics metrics) throws IOException {
+        this.scheduler = scheduler;
+        if (metrics != null) {
+            connector = new InstrumentedConnector(connector, metrics);
+        }
+        gitHub = new GitHubBuilder()
+                .withEndpoint(endpoint)
+                .withOAuthToken(token)
+                .withConnector(new ScheduledConnector(connector, scheduler, metrics))
+                .build();
+    }
+
+    // Keep this small (GitHub suggests avoiding many concurrent requests),
+    // otherwise we run into the secondary rate limits
+    public void setFetchConcurrency(int fetchConcurrency) {
+        if (fetchConcurrency < 1) {
+            throw new IllegalArgumentException("Not a valid concurrency: " + fetchConcurrency);
+        }
+        this.fetchConcurrency = fetchConcurrency;
+    }
+
+    public int getFetchConcurrency() {
+        return fetchConcurrency;
+    }
+
+    // Fetch on a pool shared with other MyGithub instances instead of one of
+    // our own. The pool's size is then the concurrency cap.
+    public void setFetchExecutor(ExecutorService fetchExecutor) {
+        this.fetchExecutor = fetchExecutor;
+    }
+
+    // With a cache we only fetch commits from around the newest one we already have on
+    public void setCommitCache(CommitCache commitCache) {
+        this.commitCache = commitCache;
+    }
+
+    // How far before the newest cached commit a load starts (30 days by
+    // default). A commit merged from a branch keeps the date it was made on
+    // the branch, so one older than this when it's merged is never found.
+    public void setCommitCacheOverlap(Duration overlap) {
+        this.commitCacheOverlapMillis = overlap.toMillis();
+    }
+
+    // Answers the open issue, pull request and collaborator metrics with
+    // batched GraphQL queries instead of REST calls per repository
+    public void setGraphQL(GraphQLDataSource graphQL) {
+        this.graphQL = graphQL;
+    }
+
+    // Takes commits, pull requests and collaborators from repositories
+    // loaded once for every user sharing the store. Commits are then matched
+    // by our login or our emails (see Identity) instead of asking GitHub for ours.
+    public void setRepoDataStore(RepoDataStore repoDataStore) {
+        this.repoDataStore = repoDataStore;
+    }
+
+    // Usually one opened from a file, so later runs only add new commits.
+    // The index's own zone decides which day a commit falls on.
+    public void setActivityIndex(ActivityIndex activityIndex) {
+        this.activityIndex = activityIndex;
+    }
+
+    // Share one between MyGithub instances whose users see the same repositories
+    public void setCollaboratorCounts(CollaboratorCounts collaboratorCounts) {
+        this.collaboratorCounts = collaboratorCounts;
+    }
+
+    protected RepoAggregates getRepoAggregates() throws IOException {
+        // query() can ask for pull requests and collaborators at the same time
+        synchronized (aggregatesLock) {
+            return loadRepoAggregates();
+        }
+    }
+
+    private RepoAggregates loadRepoAggregates() throws IOException {
+        if (myRepoAggregates == null) {
+            long since = getPullRequestsSince();
+            if (graphQL != null) {
+                myRepoAggregates = graphQL.fetch(since);
+            } else {
+                RepoAggregates aggregates = new RepoAggregates();
+                for (GHRepository repo : getRepos()) {
+                    RepoData data = repoDataStore.get(repo);
+                    aggregates.addRepo(repo.getOpenIssueCount());
+                    aggregates.addCollaborators(data.getCollaboratorCount());
+                    for (int i = 0; i < data.getPullRequestCount(); i++) {
+                        if (data.getPullRequestClosed(i) >= since) {
+                            aggregates.addPullRequest(data.getPullRequestCreated(i), data.getPullRequestClosed(i));
+                        }
+                    }
+                }
+                myRepoAggregates = aggregates;
+            }
+        }
+        return myRepoAggregates;
+    }
+
+    // How long we trust the login, id and emails before looking them up again
+    public void setIdentityTtl(long identityTtlMillis) {
+        this.identityTtlMillis = identityTtlMillis;
+    }
+
+    // Also count commits whose author email is one of ours, not only those
+    // GitHub has linked to our login. GitHub can't filter by several authors,
+    // so this lists every commit of every repository, everyone's, and picks
+    // ours out here: more requests the more others commit.
+    public void setMatchAuthorEmails(boolean matchAuthorEmails) {
+        this.matchAuthorEmails = matchAuthorEmails;
+    }
+
+    // For example Duration.ofDays(90) to average over the last 90 days of pull requests
+    public synchronized void setPullRequestWindow(Duration pullRequestWindow) {
+        this.pullRequestWindow = pullRequestWindow;
+        myRepoAggregates = null;
+    }
+
+    // GitHub allows up to 100 per page
+    public void setIssuePageSize(int issuePageSize) {
+        if (issuePageSize < 1 || issuePageSize > 100) {
+            throw new IllegalArgumentException("Not a valid page size: " + issuePageSize);
+        }
+        this.issuePageSize = issuePageSize;
+    }
+
+    // Days, months and hours are counted in this zone (the JVM's by default)
+    public synchronized void setZone(ZoneId zone) {
+        timeBuckets = new TimeBuckets(zone);
+        myCommitStats = null;
+    }
+
+    // Forgets everything loaded and computed so far (but not who we are),
+    // so the next metric call starts from fresh data
+    public synchronized void refresh() {
+        myRepos = null;
+        myCommitTimes = null;
+        myCommitStats = null;
+        myRepoAggregates = null;
     }
 
     private GHPerson getMyself() throws IOException {
@@ -22,122 +224,157 @@ public class MyGithub {
         return myself;
     }
 
+    public synchronized Identity getIdentity() throws IOException {
+        if (identity == null || identity.isExpired(identityTtlMillis)) {
+            if (identity != null) {
+                myself = null;
+            }
+            identity = Identity.of(getMyself());
+        }
+        return identity;
+    }
+
     public String getGithubName() throws IOException {
-        return gitHub.getMyself().getLogin();
+        return getIdentity().getLogin();
     }
 
     public List<GHRepository> getRepos() throws IOException {
         final int MAX_ATTEMPTS = 3;
-        int attempts = 0;
-        IOException lastException = null;
-
-        while (attempts < MAX_ATTEMPTS) {
-            try {
-                // Fetch repositories from GitHub API
-                if (myRepos == null) {
-                    myRepos = getMyself().getRepositories();
-                }
-                return new ArrayList<>(myRepos.values());
-            } catch (IOException e) {
-                lastException = e;
-                attempts++;
-                if (attempts < MAX_ATTEMPTS) {
-                    // Optional: Add a delay (e.g., Thread.sleep(1000)) for real-world scenarios
-                }
-            }
+        if (myRepos == null) {
+            // Fetch repositories from GitHub API, backing off between attempts
+            myRepos = scheduler.call(() -> getMyself().getRepositories(), MAX_ATTEMPTS, "fetch repositories");
         }
-        throw new IOException("Failed to fetch repositories after " + MAX_ATTEMPTS + " attempts", lastException);
+        return new ArrayList<>(myRepos.values());
     }
 
-    static private int argMax(int[] days) {
-        int max = Integer.MIN_VALUE;
-        int arg = -1;
-        for (int i = 0; i < days.length; i++) {
-            if (days[i] > max) {
-                max = days[i];
-                arg = i;
-            }
+    public CommitStats getCommitStats() throws IOException {
+        if (myCommitStats != null) {
+            return myCommitStats;
         }
-        return arg;
-    }
-
-    static private String intToDay(int day) {
-        return switch (day) {
-            case Calendar.SUNDAY -> "Sunday";
-            case Calendar.MONDAY -> "Monday";
-            case Calendar.TUESDAY -> "Tuesday";
-            case Calendar.WEDNESDAY -> "Wednesday";
-            case Calendar.THURSDAY -> "Thursday";
-            case Calendar.FRIDAY -> "Friday";
-            case Calendar.SATURDAY -> "Saturday";
-            default -> throw new IllegalArgumentException("Not a day: " + day);
-        };
+        CommitStats stats = CommitStatsAccumulator.of(getCommitTimes(), timeBuckets);
+        // Like the commits, stats missing some repositories aren't kept
+        if (getFailedRepos().isEmpty()) {
+            myCommitStats = stats;
+        }
+        return stats;
     }
 
-    static private String intToMonth(int month) {
-        return switch (month) {
-            case Calendar.JANUARY -> "January";
-            case Calendar.FEBRUARY -> "February";
-            case Calendar.MARCH -> "March";
-            case Calendar.APRIL -> "April";
-            case Calendar.MAY -> "May";
-            case Calendar.JUNE -> "June";
-            case Calendar.JULY -> "July";
-            case Calendar.AUGUST -> "August";
-            case Calendar.SEPTEMBER -> "September";
-            case Calendar.OCTOBER -> "October";
-            case Calendar.NOVEMBER -> "November";
-            case Calendar.DECEMBER -> "December";
-            default -> throw new IllegalArgumentException("Not a month: " + month);
-        };
+    // Computes just these metrics, loading only the data they need. Data
+    // that different metrics need (commits, pull requests, collaborators) is
+    // loaded at the same time, and each only once. The map is in Metric order.
+    public Map<Metric, Object> query(Set<Metric> metrics) throws IOException {
+        Map<Metric.Source, List<Metric>> bySource = new EnumMap<>(Metric.Source.class);
+        for (Metric metric : metrics) {
+            bySource.computeIfAbsent(metric.getSource(), s -> new ArrayList<>()).add(metric);
+        }
+        Map<Metric, Object> results = Collections.synchronizedMap(new EnumMap<>(Metric.class));
+        if (bySource.isEmpty()) {
+            return results;
+        }
+        // Everything starts from the repositories, so get them before going parallel
+        getRepos();
+        if (bySource.size() == 1) {
+            for (Metric metric : metrics) {
+                results.put(metric, metric.evaluate(this));
+            }
+            return results;
+        }
+        // Not on the fetch pool: loading commits waits on that pool itself
+        ExecutorService pool = Executors.newFixedThreadPool(bySource.size());
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (List<Metric> group : bySource.values()) {
+                futures.add(pool.submit(() -> {
+                    for (Metric metric : group) {
+                        results.put(metric, metric.evaluate(this));
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                await(future);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        return results;
     }
 
     public String getMostPopularDay() throws IOException {
-        final int SIZE = 8;
-        int[] days = new int[SIZE];
-        Calendar cal = Calendar.getInstance();
-        for (GHCommit commit: getCommits()) {
-            Date date = commit.getCommitDate();
-            cal.setTime(date);
-            int day = cal.get(Calendar.DAY_OF_WEEK);
-            days[day] += 1;
-        }
-        return intToDay(argMax(days));
+        return getCommitStats().getMostPopularDay();
     }
 
     public String getMostPopularMonth() throws IOException {
-        final int SIZE = 12;
-        int[] months = new int[SIZE];
-        Calendar cal = Calendar.getInstance();
-        for (GHCommit commit: getCommits()) {
-            Date date = commit.getCommitDate();
-            cal.setTime(date);
-            int month = cal.get(Calendar.MONTH);
-            months[month] += 1;
-        }
-        return intToMonth(argMax(months));
+        return getCommitStats().getMostPopularMonth();
     }
 
     // 3. Average time between commits (in days)
     public double getAverageTimeBetweenCommits() throws IOException {
-        List<Date> commitDates = new ArrayList<>();
-        for (GHCommit commit : getCommits()) {
-            commitDates.add(commit.getCommitDate());
-        }
-        if (commitDates.size() < 2) return 0;
+        return getCommitStats().getAverageTimeBetweenCommits();
+    }
 
-        Collections.sort(commitDates);
-        long totalDiffMillis = 0;
-        for (int i = 1; i < commitDates.size(); i++) {
-            totalDiffMillis += commitDates.get(i).getTime() - commitDates.get(i - 1).getTime();
+    // Quick numbers from only the newest `samplePages` pages (of 100) of each
+    // repository's commits and closed pull requests, so they describe recent
+    // activity. Commit gaps are taken within each repository (see
+    // ApproximateMetrics.getCommitGaps). Costs at most 2 * samplePages
+    // requests per repository, plus the login lookups of --match-emails,
+    // whose pages hold everyone's commits and so fewer of ours. Always asks
+    // GitHub: a shared RepoDataStore would load every page.
+    public ApproximateMetrics getApproximateMetrics(int samplePages) throws IOException {
+        ApproximateMetrics metrics = new ApproximateMetrics(SKETCH_SIZE);
+        Identity me = getIdentity();
+        long since = getPullRequestsSince();
+        for (GHRepository repo : getRepos()) {
+            try {
+                PagedIterator<GHCommit> commits = queryOurCommits(repo, me).list().iterator();
+                Map<String, Boolean> byEmail = new HashMap<>();
+                long previous = -1;
+                for (int page = 0; page < samplePages && commits.hasNext(); page++) {
+                    List<GHCommit> items = commits.nextPage();
+                    metrics.addPage();
+                    for (GHCommit commit : items) {
+                        if (!isOurs(commit, me, byEmail)) continue;
+                        long time = commit.getCommitDate().getTime();
+                        if (previous >= 0) {
+                            metrics.getCommitGaps().add(Math.abs(previous - time) / (double) TimeBuckets.MILLIS_PER_DAY);
+                        }
+                        previous = time;
+                    }
+                }
+            } catch (GHException e) {
+                if (!isEmptyRepository(e)) {
+                    throw e;
+                }
+            }
+            PagedIterator<GHPullRequest> prs = listClosedPullRequests(repo).iterator();
+            pages:
+            for (int page = 0; page < samplePages && prs.hasNext(); page++) {
+                List<GHPullRequest> items = prs.nextPage();
+                metrics.addPage();
+                for (GHPullRequest pr : items) {
+                    Date updated = pr.getUpdatedAt();
+                    if (updated != null && updated.getTime() < since) {
+                        break pages;
+                    }
+                    Date created = pr.getCreatedAt();
+                    Date closed = pr.getClosedAt();
+                    if (created != null && closed != null && closed.getTime() >= since) {
+                        metrics.getPullRequestDurations().add(
+                                (closed.getTime() - created.getTime()) / (double) TimeBuckets.MILLIS_PER_DAY);
+                    }
+                }
+            }
         }
-        double avgMillis = (double) totalDiffMillis / (commitDates.size() - 1);
-        return avgMillis / (1000 * 60 * 60 * 24); // return average in days
+        return metrics;
     }
 
     // 4. Average number of open issues across repositories
     public double getAverageOpenIssues() {
         try {
+            // The count comes with the repository list, so the store has nothing to add
+            if (graphQL != null) {
+                return getRepoAggregates().getAverageOpenIssues();
+            }
             int totalOpenIssues = 0;
             int repoCount = 0;
             for (GHRepository repo : getRepos()) { // Calls the retry-enabled method
@@ -155,14 +392,24 @@ public class MyGithub {
 
     // 5. Average duration (in days) that pull requests stay open
     public double getAveragePullRequestDuration() throws IOException {
+        if (graphQL != null || repoDataStore != null) {
+            return getRepoAggregates().getAveragePullRequestDuration();
+        }
+        long since = getPullRequestsSince();
         long totalDurationMillis = 0;
         int prCount = 0;
         for (GHRepository repo : getRepos()) {
-            // Get pull requests (using closed state) from the repository
-            for (GHPullRequest pr : repo.getPullRequests(GHIssueState.CLOSED)) {
+            // Pages are read as we go, so only one page of pull requests is in memory
+            for (GHPullRequest pr : listClosedPullRequests(repo)) {
+                // A pull request is updated when it's closed, so once we're past
+                // the window by update time, every later one is closed before it too
+                Date updated = pr.getUpdatedAt();
+                if (updated != null && updated.getTime() < since) {
+                    break;
+                }
                 Date created = pr.getCreatedAt();
                 Date closed = pr.getClosedAt();
-                if (created != null && closed != null) {
+                if (created != null && closed != null && closed.getTime() >= since) {
                     totalDurationMillis += closed.getTime() - created.getTime();
                     prCount++;
                 }
@@ -171,42 +418,361 @@ public class MyGithub {
         return prCount == 0 ? 0 : totalDurationMillis / (prCount * 1000.0 * 60 * 60 * 24);
     }
 
+    private long getPullRequestsSince() {
+        return pullRequestWindow == null ? Long.MIN_VALUE : System.currentTimeMillis() - pullRequestWindow.toMillis();
+    }
+
+    // Closed pull requests, most recently updated first
+    static PagedIterable<GHPullRequest> listClosedPullRequests(GHRepository repo) {
+        return repo.queryPullRequests()
+                .state(GHIssueState.CLOSED)
+                .sort(GHPullRequestQueryBuilder.Sort.UPDATED)
+                .direction(GHDirection.DESC)
+                .list()
+                .withPageSize(100);
+    }
+
     // 6. Average number of collaborators per repository
     public double getAverageCollaborators() throws IOException {
+        if (graphQL != null || repoDataStore != null) {
+            return getRepoAggregates().getAverageCollaborators();
+        }
         int totalCollaborators = 0;
-        int repoCount = 0;
-        for (GHRepository repo : getRepos()) {
-            totalCollaborators += repo.getCollaborators().size();
-            repoCount++;
+        int[] counts = countCollaborators(new ArrayList<>(getRepos()));
+        for (int count : counts) {
+            totalCollaborators += count;
         }
-        return repoCount == 0 ? 0 : (double) totalCollaborators / repoCount;
+        return counts.length == 0 ? 0 : (double) totalCollaborators / counts.length;
+    }
+
+    // Everyone who collaborates on at least one of our repositories, counted once
+    public int getDistinctCollaborators() throws IOException {
+        List<GHRepository> repos = new ArrayList<>(getRepos());
+        countCollaborators(repos);
+        return collaboratorCounts.getDistinctCount(repos);
     }
 
+    // Same concurrency as fetching commits
+    private int[] countCollaborators(List<GHRepository> repos) throws IOException {
+        int[] counts = new int[repos.size()];
+        if ((fetchConcurrency == 1 && fetchExecutor == null) || repos.size() < 2) {
+            for (int i = 0; i < repos.size(); i++) {
+                counts[i] = collaboratorCounts.count(repos.get(i));
+            }
+            return counts;
+        }
+        ExecutorService pool = fetchExecutor != null
+                ? fetchExecutor
+                : Executors.newFixedThreadPool(Math.min(fetchConcurrency, repos.size()));
+        List<Future<?>> futures = new ArrayList<>();
+        try {
+            for (int i = 0; i < repos.size(); i++) {
+                int index = i;
+                futures.add(pool.submit(() -> {
+                    counts[index] = collaboratorCounts.count(repos.get(index));
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                await(future);
+            }
+        } finally {
+            if (pool != fetchExecutor) {
+                pool.shutdownNow();
+            } else {
+                for (Future<?> future : futures) {
+                    future.cancel(true);
+                }
+            }
+        }
+        return counts;
+    }
+
+
+    // Commits per day and repository, heatmap and streaks, updated with
+    // whatever commits are new since the index was last updated
+    public synchronized ActivityIndex getActivityIndex() throws IOException {
+        if (activityIndex == null) {
+            activityIndex = new ActivityIndex(null, getGithubName(), timeBuckets.getZone());
+        }
+        if (activityIndex.update(getCommitTimes()) > 0) {
+            activityIndex.save();
+        }
+        return activityIndex;
+    }
 
-    protected Iterable<? extends GHCommit> getCommits() throws IOException {
-        if (myCommits == null) {
-            myCommits = new ArrayList<>();
-            int count = 0;
-            for (GHRepository repo: getRepos()) {
-                System.out.println("Loading commits: repo " + repo.getName());
-                try {
-                    for (GHCommit commit : repo.queryCommits().author(getGithubName()).list()) {
-                        myCommits.add(commit);
-                        count++;
-                        if (count % 100 == 0) {
-                            System.out.println("Loading commits: " + count);
+    // Repositories that keep failing are left out (see getFailedRepos), and
+    // then the commits aren't kept, so the next call tries those again
+    protected CommitTimes getCommitTimes() throws IOException {
+        if (myCommitTimes == null) {
+            List<GHRepository> repos = getRepos();
+            loadedCommits.set(0);
+            long[][] repoTimes = new long[repos.size()][];
+            IOException[] failures = new IOException[repos.size()];
+            try {
+                // A repository that fails doesn't stop the others, it's tried again once they're done
+                for (int round = 0; round < LOAD_ROUNDS; round++) {
+                    List<Integer> todo = new ArrayList<>();
+                    for (int i = 0; i < repos.size(); i++) {
+                        if (repoTimes[i] == null) {
+                            todo.add(i);
+                        }
+                    }
+                    if (todo.isEmpty()) break;
+                    if (round > 0) {
+                        System.err.println("Retrying commits of " + todo.size() + " repositories");
+                        RequestScheduler.sleep(scheduler.backoff(round));
+                    }
+                    if ((fetchConcurrency == 1 && fetchExecutor == null) || todo.size() < 2) {
+                        for (int i : todo) {
+                            tryFetchCommitTimes(repos, i, repoTimes, failures);
                         }
+                    } else {
+                        fetchCommitTimesConcurrently(repos, todo, repoTimes, failures);
                     }
-                } catch (GHException e) {
-                    if (!e.getCause().getMessage().contains("Repository is empty")) {
-                        throw e;
+                }
+            } finally {
+                // Whatever we got this far (finished repositories and pages of
+                // unfinished ones) is there for the next attempt
+                if (commitCache != null) {
+                    commitCache.save();
+                }
+            }
+            CommitTimes times = new CommitTimes();
+            failedRepos = new ArrayList<>();
+            for (int i = 0; i < repos.size(); i++) {
+                if (repoTimes[i] != null) {
+                    times.addAll(repos.get(i).getName(), repoTimes[i]);
+                } else {
+                    System.err.println("Skipping commits of " + repos.get(i).getName() + ": "
+                            + failures[i].getMessage());
+                    failedRepos.add(repos.get(i).getName());
+                }
+            }
+            times.trimToSize();
+            if (!failedRepos.isEmpty()) {
+                return times;
+            }
+            myCommitTimes = times;
+        }
+        return myCommitTimes;
+    }
+
+    // Repositories whose commits are missing from the last load because they kept failing
+    public List<String> getFailedRepos() {
+        return failedRepos == null ? List.of() : Collections.unmodifiableList(failedRepos);
+    }
+
+    private void tryFetchCommitTimes(List<GHRepository> repos, int i, long[][] repoTimes, IOException[] failures)
+            throws IOException {
+        try {
+            repoTimes[i] = fetchCommitTimes(repos.get(i));
+        } catch (InterruptedIOException e) {
+            throw e;
+        } catch (IOException e) {
+            failures[i] = e;
+        } catch (GHException e) {
+            // Errors while paging come wrapped
+            failures[i] = e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e);
+        }
+    }
+
+    private void fetchCommitTimesConcurrently(List<GHRepository> repos, List<Integer> todo, long[][] repoTimes,
+                                              IOException[] failures) throws IOException {
+        ExecutorService pool = fetchExecutor != null
+                ? fetchExecutor
+                : Executors.newFixedThreadPool(Math.min(fetchConcurrency, todo.size()));
+        List<Future<?>> futures = new ArrayList<>();
+        try {
+            // Each task writes only its own slots, and await() makes them visible here
+            for (int i : todo) {
+                futures.add(pool.submit(() -> {
+                    tryFetchCommitTimes(repos, i, repoTimes, failures);
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                await(future);
+            }
+        } finally {
+            if (pool != fetchExecutor) {
+                pool.shutdownNow();
+            } else {
+                // Don't leave our work behind on a shared pool if we failed
+                for (Future<?> future: futures) {
+                    future.cancel(true);
+                }
+            }
+        }
+    }
+
+    protected long[] fetchCommitTimes(GHRepository repo) throws IOException {
+        Identity me = getIdentity();
+        if (repoDataStore != null) {
+            return repoDataStore.get(repo).getCommitTimes(me.getLogin(), me.getEmails());
+        }
+        if (commitCache == null) {
+            return queryCommitTimes(repo, me);
+        }
+        return fetchCommitTimesCheckpointed(repo, me);
+    }
+
+    // Our commits, newest first. GitHub can only pick them by one author
+    // (login or email), so with --match-emails we list everyone's and
+    // isOurs picks ours.
+    private GHCommitQueryBuilder queryOurCommits(GHRepository repo, Identity me) {
+        GHCommitQueryBuilder query = repo.queryCommits().pageSize(PAGE_SIZE);
+        return matchAuthorEmails ? query : query.author(me.getLogin());
+    }
+
+    // With --match-emails a commit is ours if it has one of our emails or
+    // GitHub linked it to our login. Looking up the login can cost a request,
+    // so each email is decided once (in `byEmail`).
+    private boolean isOurs(GHCommit commit, Identity me, Map<String, Boolean> byEmail) throws IOException {
+        if (!matchAuthorEmails) return true;
+        GitUser author = commit.getCommitShortInfo().getAuthor();
+        String email = author == null || author.getEmail() == null ? "" : author.getEmail().toLowerCase(Locale.ROOT);
+        Boolean ours = byEmail.get(email);
+        if (ours == null) {
+            ours = me.hasEmail(email);
+            if (!ours) {
+                GHUser user = commit.getAuthor();
+                ours = user != null && me.getLogin().equalsIgnoreCase(user.getLogin());
+            }
+            byEmail.put(email, ours);
+        }
+        return ours;
+    }
+
+    // Where a load of a cached repository starts, or null for the whole
+    // history. The commits we list again are skipped by SHA.
+    private Date getCacheSince(String name) {
+        long watermark = commitCache.getWatermark(name);
+        return commitCache.contains(name) && watermark > 0 ? new Date(watermark - commitCacheOverlapMillis) : null;
+    }
+
+    // Adds commits to the cache a page at a time and saves it every few
+    // pages; the watermark only moves once the whole list is read. The list
+    // isn't strictly in date order (clock skew, rebased and merged commits),
+    // so an unfinished load is listed again from the same start, and the
+    // commits it already has are skipped by SHA.
+    private long[] fetchCommitTimesCheckpointed(GHRepository repo, Identity me) throws IOException {
+        String name = repo.getName();
+        GHCommitQueryBuilder query = queryOurCommits(repo, me);
+        Date since = getCacheSince(name);
+        if (since != null) {
+            query.since(since);
+        }
+        System.out.println("Loading commits: repo " + name + (commitCache.isComplete(name) ? "" : " (resuming)"));
+        String[] shas = new String[PAGE_SIZE];
+        long[] page = new long[PAGE_SIZE];
+        int size = 0;
+        int pages = 0;
+        Map<String, Boolean> byEmail = new HashMap<>();
+        try {
+            for (GHCommit commit : query.list()) {
+                if (!isOurs(commit, me, byEmail)) continue;
+                shas[size] = commit.getSHA1();
+                page[size++] = commit.getCommitDate().getTime();
+                countLoadedCommit();
+                if (size == PAGE_SIZE) {
+                    commitCache.appendPage(name, shas.clone(), page.clone());
+                    size = 0;
+                    if (++pages % CHECKPOINT_PAGES == 0) {
+                        commitCache.save();
                     }
                 }
             }
+        } catch (GHException e) {
+            if (!isEmptyRepository(e)) {
+                commitCache.appendPage(name, Arrays.copyOf(shas, size), Arrays.copyOf(page, size));
+                throw e;
+            }
+        }
+        commitCache.appendPage(name, Arrays.copyOf(shas, size), Arrays.copyOf(page, size));
+        return commitCache.complete(name);
+    }
+
+    // Only the commit date is kept, so each GHCommit is garbage as soon as we've read it
+    private long[] queryCommitTimes(GHRepository repo, Identity me) throws IOException {
+        System.out.println("Loading commits: repo " + repo.getName());
+        long[] times = new long[16];
+        int size = 0;
+        Map<String, Boolean> byEmail = new HashMap<>();
+        try {
+            for (GHCommit commit : queryOurCommits(repo, me).list()) {
+                if (!isOurs(commit, me, byEmail)) continue;
+                if (size == times.length) {
+                    times = Arrays.copyOf(times, size * 2);
+                }
+                times[size++] = commit.getCommitDate().getTime();
+                countLoadedCommit();
+            }
+        } catch (GHException e) {
+            if (!isEmptyRepository(e)) {
+                throw e;
+            }
+        }
+        return Arrays.copyOf(times, size);
+    }
+
+    private void countLoadedCommit() {
+        int count = loadedCommits.incrementAndGet();
+        if (count % 100 == 0) {
+            System.out.println("Loading commits: " + count);
         }
-        return myCommits;
     }
 
+    static boolean isEmptyRepository(GHException e) {
+        return e.getCause() != null && e.getCause().getMessage() != null
+                && e.getCause().getMessage().contains("Repository is empty");
+    }
+
+    static <T> T await(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while loading from GitHub");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    // Calls `action` with the creation time (epoch millis) of each closed issue
+    // created in [since, until), newest first within each repository. Issues
+    // are read a page at a time and not kept, so memory doesn't grow with them.
+    public void forEachClosedIssueCreateTime(long since, long until, LongConsumer action) throws IOException {
+        for (GHRepository repo : getRepos()) {
+            for (GHIssue issue : repo.listIssues(GHIssueState.CLOSED).withPageSize(issuePageSize)) {
+                Date createdAt = issue.getCreatedAt();
+                if (createdAt == null) continue;
+                long created = createdAt.getTime();
+                // Listed newest first, so the rest of this repository is older still
+                if (created < since) break;
+                if (created < until) {
+                    action.accept(created);
+                }
+            }
+        }
+    }
+
+    public long[] getClosedIssueCreateTimes(long since, long until) throws IOException {
+        LongStream.Builder times = LongStream.builder();
+        forEachClosedIssueCreateTime(since, until, times::add);
+        return times.build().toArray();
+    }
+
+    // Holds every closed issue of every repository at once, use
+    // getClosedIssueCreateTimes or forEachClosedIssueCreateTime instead
+    @Deprecated
     public ArrayList<Date> getIssueCreateDates() throws IOException {
         ArrayList<Date> result = new ArrayList<>();
         for (GHRepository repo: getRepos()) {
@@ -0,0 +1,49 @@
+package ca.ualberta.cs.cmput402.ghdow;
+
+// Per-repository totals behind the open issue, pull request and
+// collaborator averages
+public class RepoAggregates {
+    private int repoCount;
+    private long totalOpenIssues;
+    // Collaborators are only visible with push access, so not every repository counts
+    private int collaboratorRepoCount;
+    private long totalCollaborators;
+    private int pullRequestCount;
+    private long totalPullRequestMillis;
+
+    public void addRepo(int openIssues) {
+        repoCount++;
+        totalOpenIssues += openIssues;
+    }
+
+    public void addCollaborators(int collaborators) {
+        collaboratorRepoCount++;
+        totalCollaborators += collaborators;
+    }
+
+    public void addPullRequest(long createdAt, long closedAt) {
+        pullRequestCount++;
+        totalPullRequestMillis += closedAt - createdAt;
+    }
+
+    public int getRepoCount() {
+        return repoCount;
+    }
+
+    public int getPullRequestCount() {
+        return pullRequestCount;
+    }
+
+    public double getAverageOpenIssues() {
+        return repoCount == 0 ? 0 : (double) totalOpenIssues / repoCount;
+    }
+
+    // Average duration (in days) that pull requests stay open
+    public double getAveragePullRequestDuration() {
+        return pullRequestCount == 0 ? 0 : totalPullRequestMillis / (pullRequestCount * 1000.0 * 60 * 60 * 24);
+    }
+
+    public double getAverageCollaborators() {
+        return collaboratorRepoCount == 0 ? 0 : (double) totalCollaborators / collaboratorRepoCount;
+    }
+}
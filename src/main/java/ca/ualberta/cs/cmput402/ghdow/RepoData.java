@@ -0,0 +1,141 @@
+package ca.ualberta.cs.cmput402.ghdow;
+
+import org.kohsuke.github.*;
+
+import java.io.IOException;
+import java.util.*;
+
+// Everything the metrics need from one repository, for all of its users at
+// once: every commit's time indexed by author email (and the login GitHub
+// linked that email to), the closed pull requests (those closed since the
+// store's window, if it has one) and the collaborator count. Immutable once loaded.
+public class RepoData {
+    private static final long[] NO_COMMITS = new long[0];
+
+    private final Map<String, long[]> commitTimesByEmail;
+    private final Map<String, String> loginByEmail;
+    private final long[] pullRequestCreated;
+    private final long[] pullRequestClosed;
+    private final int collaboratorCount;
+
+    RepoData(Map<String, long[]> commitTimesByEmail, Map<String, String> loginByEmail, long[] pullRequestCreated,
+             long[] pullRequestClosed, int collaboratorCount) {
+        this.commitTimesByEmail = commitTimesByEmail;
+        this.loginByEmail = loginByEmail;
+        this.pullRequestCreated = pullRequestCreated;
+        this.pullRequestClosed = pullRequestClosed;
+        this.collaboratorCount = collaboratorCount;
+    }
+
+    // Commits are keyed by the author email in the commit itself. The login
+    // is resolved once per email rather than once per commit, so users whose
+    // token can't read their emails still find the commits GitHub linked to them.
+    // Pull requests closed before `pullRequestsSince` are left out, and listing
+    // them stops at the first one last updated before it.
+    public static RepoData load(GHRepository repo, long pullRequestsSince) throws IOException {
+        System.out.println("Loading repository: " + repo.getFullName());
+        Map<String, LongList> byEmail = new HashMap<>();
+        Map<String, String> loginByEmail = new HashMap<>();
+        try {
+            for (GHCommit commit : repo.listCommits()) {
+                GitUser author = commit.getCommitShortInfo().getAuthor();
+                String email = author == null || author.getEmail() == null ? "" : author.getEmail().toLowerCase(Locale.ROOT);
+                if (!byEmail.containsKey(email)) {
+                    GHUser user = commit.getAuthor();
+                    if (user != null && user.getLogin() != null) {
+                        loginByEmail.put(email, user.getLogin().toLowerCase(Locale.ROOT));
+                    }
+                }
+                byEmail.computeIfAbsent(email, e -> new LongList()).add(commit.getCommitDate().getTime());
+            }
+        } catch (GHException e) {
+            if (!MyGithub.isEmptyRepository(e)) {
+                throw e;
+            }
+        }
+        Map<String, long[]> commitTimesByEmail = new HashMap<>();
+        for (Map.Entry<String, LongList> entry : byEmail.entrySet()) {
+            commitTimesByEmail.put(entry.getKey(), entry.getValue().toArray());
+        }
+
+        LongList created = new LongList();
+        LongList closed = new LongList();
+        for (GHPullRequest pr : MyGithub.listClosedPullRequests(repo)) {
+            Date updated = pr.getUpdatedAt();
+            if (updated != null && updated.getTime() < pullRequestsSince) {
+                break;
+            }
+            Date createdAt = pr.getCreatedAt();
+            Date closedAt = pr.getClosedAt();
+            if (createdAt != null && closedAt != null && closedAt.getTime() >= pullRequestsSince) {
+                created.add(createdAt.getTime());
+                closed.add(closedAt.getTime());
+            }
+        }
+        return new RepoData(commitTimesByEmail, loginByEmail, created.toArray(), closed.toArray(),
+                repo.getCollaboratorNames().size());
+    }
+
+    // Commit times of the commits made with one of these emails or linked to
+    // this login. A commit has one author email, so none is counted twice.
+    public long[] getCommitTimes(String login, Collection<String> emails) {
+        Set<String> lowerEmails = new HashSet<>();
+        for (String email : emails) {
+            lowerEmails.add(email.toLowerCase(Locale.ROOT));
+        }
+        String lowerLogin = login == null ? null : login.toLowerCase(Locale.ROOT);
+        long[] result = NO_COMMITS;
+        for (Map.Entry<String, long[]> entry : commitTimesByEmail.entrySet()) {
+            String email = entry.getKey();
+            if (!lowerEmails.contains(email)
+                    && (lowerLogin == null || !lowerLogin.equals(loginByEmail.get(email)))) {
+                continue;
+            }
+            long[] times = entry.getValue();
+            int size = result.length;
+            result = Arrays.copyOf(result, size + times.length);
+            System.arraycopy(times, 0, result, size, times.length);
+        }
+        return result;
+    }
+
+    public int getCommitCount() {
+        int count = 0;
+        for (long[] times : commitTimesByEmail.values()) {
+            count += times.length;
+        }
+        return count;
+    }
+
+    public int getPullRequestCount() {
+        return pullRequestCreated.length;
+    }
+
+    public long getPullRequestCreated(int i) {
+        return pullRequestCreated[i];
+    }
+
+    public long getPullRequestClosed(int i) {
+        return pullRequestClosed[i];
+    }
+
+    public int getCollaboratorCount() {
+        return collaboratorCount;
+    }
+
+    private static class LongList {
+        long[] values = new long[16];
+        int size;
+
+        void add(long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        long[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
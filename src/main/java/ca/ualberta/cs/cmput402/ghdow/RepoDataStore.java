@@ -0,0 +1,62 @@
+package ca.ualberta.cs.cmput402.ghdow;
+
+import org.kohsuke.github.GHRepository;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+// Loads each repository once for every MyGithub sharing this store, so users
+// of the same organization repositories don't download the same pages again.
+// Keyed by full name; a user asking for a repository that is still loading
+// waits for that load instead of starting another one.
+public class RepoDataStore {
+    private final ConcurrentMap<String, Future<RepoData>> repos = new ConcurrentHashMap<>();
+    private final Duration pullRequestWindow;
+
+    // Keeps every closed pull request
+    public RepoDataStore() {
+        this(null);
+    }
+
+    // Only keeps pull requests closed within `pullRequestWindow` of the load
+    // (all of them if it's null), so users shouldn't ask for a longer window
+    public RepoDataStore(Duration pullRequestWindow) {
+        this.pullRequestWindow = pullRequestWindow;
+    }
+
+    public RepoData get(GHRepository repo) throws IOException {
+        String name = repo.getFullName();
+        Future<RepoData> future = repos.get(name);
+        if (future == null) {
+            long since = pullRequestWindow == null
+                    ? Long.MIN_VALUE
+                    : System.currentTimeMillis() - pullRequestWindow.toMillis();
+            FutureTask<RepoData> task = new FutureTask<>(() -> RepoData.load(repo, since));
+            future = repos.putIfAbsent(name, task);
+            if (future == null) {
+                future = task;
+                task.run();
+            }
+        }
+        try {
+            return MyGithub.await(future);
+        } catch (IOException | RuntimeException e) {
+            // Let the next user try again rather than remembering the failure
+            repos.remove(name, future);
+            throw e;
+        }
+    }
+
+    public int size() {
+        return repos.size();
+    }
+
+    // Everything is loaded again on the next get
+    public void clear() {
+        repos.clear();
+    }
+}
@@ -0,0 +1,236 @@
+package ca.ualberta.cs.cmput402.ghdow;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.URL;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+// Counts every request we send to GitHub by endpoint ("GET /repos/{owner}/{repo}/commits"):
+// pages fetched, failures, retries, bytes received and a latency histogram,
+// plus the lowest rate limit remaining we've seen. Bodies the response cache
+// answered from disk after a 304 are counted apart from bytes received. Cheap enough to leave on;
+// recording is a few atomic adds.
+public class RequestMetrics implements RequestMetricsMXBean {
+    // Bucket 0 is under 1ms, bucket i is [2^(i-1), 2^i) ms, the last one is everything longer
+    static final int BUCKETS = 20;
+
+    private final ConcurrentMap<String, Endpoint> endpoints = new ConcurrentHashMap<>();
+    private final AtomicInteger rateLimitRemaining = new AtomicInteger(Integer.MAX_VALUE);
+
+    static class Endpoint {
+        final LongAdder requests = new LongAdder();
+        final LongAdder errors = new LongAdder();
+        final LongAdder retries = new LongAdder();
+        final LongAdder bytes = new LongAdder();
+        final LongAdder cachedBytes = new LongAdder();
+        final LongAdder totalNanos = new LongAdder();
+        final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+        final AtomicLongArray histogram = new AtomicLongArray(BUCKETS);
+
+        void record(long nanos, boolean failed) {
+            requests.increment();
+            if (failed) {
+                errors.increment();
+            }
+            totalNanos.add(nanos);
+            maxNanos.accumulate(nanos);
+            histogram.incrementAndGet(bucket(TimeUnit.NANOSECONDS.toMillis(nanos)));
+        }
+
+        double meanMillis() {
+            long count = requests.sum();
+            return count == 0 ? 0 : totalNanos.sum() / (count * 1e6);
+        }
+
+        // Upper bound of the bucket holding the p-th quantile, so within a factor of 2
+        long percentileMillis(double p) {
+            long count = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                count += histogram.get(i);
+            }
+            long rank = (long) Math.ceil(p * count);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS - 1; i++) {
+                seen += histogram.get(i);
+                if (seen >= rank && seen > 0) {
+                    return 1L << i;
+                }
+            }
+            return TimeUnit.NANOSECONDS.toMillis(maxNanos.get());
+        }
+    }
+
+    static int bucket(long millis) {
+        if (millis < 1) return 0;
+        return Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(millis));
+    }
+
+    // Owner, repository and user names, numbers and SHAs are replaced so
+    // that requests to the same API share an entry
+    static String endpoint(String method, URL url) {
+        String[] segments = url.getPath().split("/");
+        StringBuilder template = new StringBuilder(method);
+        template.append(' ');
+        for (int i = 1; i < segments.length; i++) {
+            String segment = segments[i];
+            String previous = segments[i - 1];
+            if (i == 2 && (previous.equals("repos") || previous.equals("users") || previous.equals("orgs"))) {
+                segment = previous.equals("repos") ? "{owner}" : "{" + previous.substring(0, previous.length() - 1) + "}";
+            } else if (i == 3 && segments[1].equals("repos")) {
+                segment = "{repo}";
+            } else if (segment.matches("\\d+")) {
+                segment = "{n}";
+            } else if (segment.matches("[0-9a-f]{40}")) {
+                segment = "{sha}";
+            }
+            template.append('/').append(segment);
+        }
+        if (segments.length <= 1) {
+            template.append('/');
+        }
+        return template.toString();
+    }
+
+    private Endpoint get(String endpoint) {
+        return endpoints.computeIfAbsent(endpoint, e -> new Endpoint());
+    }
+
+    // A request that threw instead of returning a response is recorded as failed
+    public void recordRequest(String endpoint, long nanos, boolean failed) {
+        get(endpoint).record(nanos, failed);
+    }
+
+    public void recordBytes(String endpoint, long bytes) {
+        get(endpoint).bytes.add(bytes);
+    }
+
+    public void recordCachedBytes(String endpoint, long bytes) {
+        get(endpoint).cachedBytes.add(bytes);
+    }
+
+    public void recordRetry(String endpoint) {
+        get(endpoint).retries.increment();
+    }
+
+    public void recordRateLimitRemaining(int remaining) {
+        rateLimitRemaining.accumulateAndGet(remaining, Math::min);
+    }
+
+    // From an X-RateLimit-Remaining header, which may be missing or not a number
+    public void recordRateLimitRemaining(String header) {
+        if (header == null) return;
+        try {
+            recordRateLimitRemaining(Integer.parseInt(header.trim()));
+        } catch (NumberFormatException e) {
+            // Not a number, nothing to record
+        }
+    }
+
+    public void register(String name) throws IOException {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this,
+                    new ObjectName("ca.ualberta.cs.cmput402.ghdow:type=RequestMetrics,name=" + name));
+        } catch (JMException e) {
+            throw new IOException("Could not register metrics " + name, e);
+        }
+    }
+
+    private long sum(Function<Endpoint, LongAdder> field) {
+        long total = 0;
+        for (Endpoint endpoint : endpoints.values()) {
+            total += field.apply(endpoint).sum();
+        }
+        return total;
+    }
+
+    private <T> Map<String, T> byEndpoint(Function<Endpoint, T> value) {
+        Map<String, T> result = new TreeMap<>();
+        endpoints.forEach((name, endpoint) -> result.put(name, value.apply(endpoint)));
+        return result;
+    }
+
+    @Override
+    public long getRequestCount() {
+        return sum(e -> e.requests);
+    }
+
+    @Override
+    public long getErrorCount() {
+        return sum(e -> e.errors);
+    }
+
+    @Override
+    public long getRetryCount() {
+        return sum(e -> e.retries);
+    }
+
+    @Override
+    public long getBytesReceived() {
+        return sum(e -> e.bytes);
+    }
+
+    @Override
+    public long getBytesFromCache() {
+        return sum(e -> e.cachedBytes);
+    }
+
+    // -1 until a response has told us
+    @Override
+    public int getRateLimitRemaining() {
+        int remaining = rateLimitRemaining.get();
+        return remaining == Integer.MAX_VALUE ? -1 : remaining;
+    }
+
+    @Override
+    public Map<String, Long> getRequestsByEndpoint() {
+        return byEndpoint(e -> e.requests.sum());
+    }
+
+    @Override
+    public Map<String, Double> getMeanLatencyMillis() {
+        return byEndpoint(Endpoint::meanMillis);
+    }
+
+    @Override
+    public Map<String, Long> getP95LatencyMillis() {
+        return byEndpoint(e -> e.percentileMillis(0.95));
+    }
+
+    // A table for the end of a run, busiest endpoints first
+    @Override
+    public String getSummary() {
+        StringBuilder summary = new StringBuilder(String.format("%-50s %7s %6s %7s %10s %8s %7s %7s %7s%n",
+                "endpoint", "pages", "errors", "retries", "KiB", "mean ms", "p50 ms", "p95 ms", "max ms"));
+        endpoints.entrySet().stream()
+                .sorted((a, b) -> Long.compare(b.getValue().requests.sum(), a.getValue().requests.sum()))
+                .forEach(entry -> {
+                    Endpoint e = entry.getValue();
+                    summary.append(String.format("%-50s %7d %6d %7d %10.1f %8.1f %7d %7d %7d%n",
+                            entry.getKey(), e.requests.sum(), e.errors.sum(), e.retries.sum(),
+                            e.bytes.sum() / 1024.0, e.meanMillis(), e.percentileMillis(0.5),
+                            e.percentileMillis(0.95), TimeUnit.NANOSECONDS.toMillis(e.maxNanos.get())));
+                });
+        summary.append(String.format("%-50s %7d %6d %7d %10.1f%n", "total",
+                getRequestCount(), getErrorCount(), getRetryCount(), getBytesReceived() / 1024.0));
+        summary.append(String.format("From the response cache: %.1f KiB%n", getBytesFromCache() / 1024.0));
+        summary.append("Rate limit remaining: ").append(getRateLimitRemaining());
+        return summary.toString();
+    }
+
+    @Override
+    public void reset() {
+        endpoints.clear();
+        rateLimitRemaining.set(Integer.MAX_VALUE);
+    }
+}
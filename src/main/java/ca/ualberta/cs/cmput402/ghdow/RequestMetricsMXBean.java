@@ -0,0 +1,28 @@
+package ca.ualberta.cs.cmput402.ghdow;
+
+import java.util.Map;
+
+// What RequestMetrics shows in JConsole/VisualVM, per endpoint where it's a map
+public interface RequestMetricsMXBean {
+    long getRequestCount();
+
+    long getErrorCount();
+
+    long getRetryCount();
+
+    long getBytesReceived();
+
+    long getBytesFromCache();
+
+    int getRateLimitRemaining();
+
+    Map<String, Long> getRequestsByEndpoint();
+
+    Map<String, Double> getMeanLatencyMillis();
+
+    Map<String, Long> getP95LatencyMillis();
+
+    String getSummary();
+
+    void reset();
+}
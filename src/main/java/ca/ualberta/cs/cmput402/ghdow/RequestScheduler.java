@@ -0,0 +1,190 @@
+package ca.ualberta.cs.cmput402.ghdow;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+// Paces every request made with one token using the X-RateLimit-* headers
+// GitHub sends back, and decides how long to back off before a retry.
+// Requests go out freely while plenty of quota is left; once we're down to
+// the last PACING_FRACTION of it, they are spread out evenly until the reset.
+public class RequestScheduler {
+    private static final double PACING_FRACTION = 0.1;
+    private static final int RESERVE = 5; // keep a few requests back for retries
+
+    private final long baseDelayMillis;
+    private final long maxDelayMillis;
+    private int limit = -1;
+    private int remaining = -1;
+    private long resetAt;
+    private long nextSlot;
+    // Tests swap this out so they don't wait for real
+    Sleeper sleeper = RequestScheduler::sleep;
+    // Set on the thread running call(), which retries failures by itself
+    private final ThreadLocal<Boolean> retrying = ThreadLocal.withInitial(() -> false);
+
+    public RequestScheduler() {
+        this(500, 60_000);
+    }
+
+    public RequestScheduler(long baseDelayMillis, long maxDelayMillis) {
+        this.baseDelayMillis = baseDelayMillis;
+        this.maxDelayMillis = maxDelayMillis;
+    }
+
+    public interface Call<T> {
+        T call() throws IOException;
+    }
+
+    interface Sleeper {
+        void sleep(long millis) throws InterruptedIOException;
+    }
+
+    // Runs call, retrying with backoff when it throws. The requests it makes
+    // aren't retried on their own as well (see isRetrying).
+    public <T> T call(Call<T> call, int maxAttempts, String what) throws IOException {
+        boolean outer = retrying.get();
+        retrying.set(true);
+        try {
+            IOException lastException = null;
+            for (int attempt = 0; attempt < maxAttempts; attempt++) {
+                if (attempt > 0) {
+                    sleeper.sleep(backoff(attempt - 1));
+                }
+                try {
+                    return call.call();
+                } catch (InterruptedIOException e) {
+                    throw e;
+                } catch (IOException e) {
+                    lastException = e;
+                }
+            }
+            throw new IOException("Failed to " + what + " after " + maxAttempts + " attempts", lastException);
+        } finally {
+            retrying.set(outer);
+        }
+    }
+
+    // True while this thread is inside call()
+    public boolean isRetrying() {
+        return retrying.get();
+    }
+
+    // Blocks until the caller may send its next request
+    public void acquire() throws InterruptedIOException {
+        long wait;
+        synchronized (this) {
+            long now = System.currentTimeMillis();
+            long start = Math.max(now, nextSlot);
+            if (remaining >= 0 && resetAt > now) {
+                if (remaining <= RESERVE) {
+                    start = Math.max(start, resetAt);
+                } else if (remaining < limit * PACING_FRACTION) {
+                    nextSlot = start + (resetAt - start) / (remaining - RESERVE);
+                }
+                // Count the request now, so concurrent callers don't all see the same quota
+                remaining--;
+            }
+            wait = start - now;
+        }
+        sleeper.sleep(wait);
+    }
+
+    // Records the rate limit headers and says how long to wait before trying
+    // again, or -1 if the response shouldn't be retried
+    public long onResponse(int statusCode, Map<String, List<String>> headers, int attempt) {
+        update(headers);
+        if (statusCode == 403 || statusCode == 429) {
+            String retryAfter = header(headers, "Retry-After");
+            if (retryAfter != null) {
+                // Secondary rate limit, GitHub tells us how long to wait
+                return retryAfterMillis(retryAfter.strip(), attempt) + backoff(0);
+            }
+            if ("0".equals(header(headers, "X-RateLimit-Remaining"))) {
+                synchronized (this) {
+                    return Math.max(0, resetAt - System.currentTimeMillis()) + backoff(0);
+                }
+            }
+            // Permission problems and the like won't go away by waiting
+            return -1;
+        }
+        if (statusCode == 502 || statusCode == 503 || statusCode == 504) {
+            return backoff(attempt);
+        }
+        return -1;
+    }
+
+    // Retry-After is either seconds or an HTTP date; anything else gets the usual backoff
+    private long retryAfterMillis(String retryAfter, int attempt) {
+        try {
+            return Long.parseLong(retryAfter) * 1000;
+        } catch (NumberFormatException e) {
+            // Not seconds, so a date
+        }
+        try {
+            long at = ZonedDateTime.parse(retryAfter, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+            return Math.max(0, at - System.currentTimeMillis());
+        } catch (DateTimeParseException e) {
+            return backoff(attempt);
+        }
+    }
+
+    // Exponential backoff with jitter, so concurrent callers don't retry in lockstep
+    public long backoff(int attempt) {
+        long delay = Math.min(maxDelayMillis, baseDelayMillis << Math.min(attempt, 20));
+        return delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+    }
+
+    public synchronized int getRemaining() {
+        return remaining;
+    }
+
+    public synchronized long getResetAt() {
+        return resetAt;
+    }
+
+    private synchronized void update(Map<String, List<String>> headers) {
+        String remainingHeader = header(headers, "X-RateLimit-Remaining");
+        String resetHeader = header(headers, "X-RateLimit-Reset");
+        if (remainingHeader == null || resetHeader == null) return;
+        int newRemaining = Integer.parseInt(remainingHeader.strip());
+        long newResetAt = Long.parseLong(resetHeader.strip()) * 1000;
+        String limitHeader = header(headers, "X-RateLimit-Limit");
+        if (limitHeader != null) {
+            limit = Integer.parseInt(limitHeader.strip());
+        }
+        // Responses to concurrent requests arrive out of order, so within one
+        // window the lowest remaining count is the most recent
+        if (newResetAt > resetAt) {
+            resetAt = newResetAt;
+            remaining = newRemaining;
+            nextSlot = 0;
+        } else if (newResetAt == resetAt) {
+            remaining = Math.min(remaining, newRemaining);
+        }
+    }
+
+    private static String header(Map<String, List<String>> headers, String name) {
+        for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+            if (name.equalsIgnoreCase(header.getKey()) && !header.getValue().isEmpty()) {
+                return header.getValue().get(0);
+            }
+        }
+        return null;
+    }
+
+    static void sleep(long millis) throws InterruptedIOException {
+        if (millis <= 0) return;
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting to call GitHub");
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package ca.ualberta.cs.cmput402.ghdow;
+
+// Mean and quantiles of a stream of values in bounded memory: the mean
+// (with its standard error) is kept exactly, quantiles come from a KllSketch
+public class SampledDistribution {
+    private final KllSketch sketch;
+    private long count;
+    private double mean;
+    private double squaredDeviations;
+
+    public SampledDistribution(int k) {
+        this.sketch = new KllSketch(k);
+    }
+
+    SampledDistribution(KllSketch sketch) {
+        this.sketch = sketch;
+    }
+
+    public void add(double value) {
+        sketch.add(value);
+        // Welford's update, which doesn't lose precision on long streams
+        count++;
+        double delta = value - mean;
+        mean += delta / count;
+        squaredDeviations += delta * (value - mean);
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getMean() {
+        return count == 0 ? 0 : mean;
+    }
+
+    // Half the width of a 95% confidence interval around the mean, if the values were a random sample
+    public double getMeanError() {
+        if (count < 2) {
+            return Double.NaN;
+        }
+        return 1.96 * Math.sqrt(squaredDeviations / (count - 1) / count);
+    }
+
+    public double getMedian() {
+        return sketch.getQuantile(0.5);
+    }
+
+    public double getQuantile(double fraction) {
+        return sketch.getQuantile(fraction);
+    }
+
+    // A quantile is off by at most this fraction of the values (99% confidence)
+    public double getRankError() {
+        return sketch.getNormalizedRankError();
+    }
+
+    // For example "3.20 +/- 0.41 (median 1.10, p90 7.52, ranks +/- 1.3%, n = 1234)"
+    @Override
+    public String toString() {
+        if (count == 0) {
+            return "no data";
+        }
+        return String.format("%.2f +/- %.2f (median %.2f, p90 %.2f, ranks +/- %.1f%%, n = %d)",
+                getMean(), getMeanError(), getMedian(), getQuantile(0.9), getRankError() * 100, count);
+    }
+}
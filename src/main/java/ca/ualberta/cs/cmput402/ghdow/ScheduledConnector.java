@@ -0,0 +1,66 @@
+package ca.ualberta.cs.cmput402.ghdow;
+
+import org.kohsuke.github.connector.GitHubConnector;
+import org.kohsuke.github.connector.GitHubConnectorRequest;
+import org.kohsuke.github.connector.GitHubConnectorResponse;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+
+// Sends every request through a RequestScheduler, retrying rate limited
+// and failed requests after the scheduler's backoff. Inside
+// RequestScheduler.call(), which retries by itself, only rate limits are
+// waited out here, so a failing request isn't tried attempts x attempts times.
+public class ScheduledConnector implements GitHubConnector {
+    private static final int MAX_ATTEMPTS = 5;
+
+    private final GitHubConnector delegate;
+    private final RequestScheduler scheduler;
+    private final RequestMetrics metrics;
+
+    public ScheduledConnector(GitHubConnector delegate, RequestScheduler scheduler) {
+        this(delegate, scheduler, null);
+    }
+
+    // Retries are counted in `metrics` when it isn't null
+    public ScheduledConnector(GitHubConnector delegate, RequestScheduler scheduler, RequestMetrics metrics) {
+        this.delegate = delegate;
+        this.scheduler = scheduler;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public GitHubConnectorResponse send(GitHubConnectorRequest request) throws IOException {
+        // A request body can only be read once, so those requests aren't retried
+        int maxAttempts = request.hasBody() ? 1 : MAX_ATTEMPTS;
+        boolean retriedOutside = scheduler.isRetrying();
+        for (int attempt = 0; ; attempt++) {
+            scheduler.acquire();
+            GitHubConnectorResponse response;
+            try {
+                response = delegate.send(request);
+            } catch (InterruptedIOException e) {
+                throw e;
+            } catch (IOException e) {
+                if (retriedOutside || attempt + 1 >= maxAttempts) throw e;
+                recordRetry(request);
+                RequestScheduler.sleep(scheduler.backoff(attempt));
+                continue;
+            }
+            long retryIn = scheduler.onResponse(response.statusCode(), response.allHeaders(), attempt);
+            boolean serverError = response.statusCode() >= 500;
+            if (retryIn < 0 || attempt + 1 >= maxAttempts || (retriedOutside && serverError)) {
+                return response;
+            }
+            response.close();
+            recordRetry(request);
+            RequestScheduler.sleep(retryIn);
+        }
+    }
+
+    private void recordRetry(GitHubConnectorRequest request) {
+        if (metrics != null) {
+            metrics.recordRetry(RequestMetrics.endpoint(request.method(), request.url()));
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package ca.ualberta.cs.cmput402.ghdow;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
+import java.util.Arrays;
+
+// Turns epoch millis into local day of week, month, hour, etc. for one time
+// zone without allocating anything. The zone's offset changes between
+// TABLE_START and TABLE_END are looked up once, after that every conversion
+// is a binary search and some integer arithmetic.
+public class TimeBuckets {
+    public static final long MILLIS_PER_DAY = 24L * 60 * 60 * 1000;
+    private static final long MILLIS_PER_HOUR = 60L * 60 * 1000;
+    private static final long TABLE_START = -2_208_988_800_000L; // 1900-01-01
+    private static final long TABLE_END = 4_102_444_800_000L; // 2100-01-01
+
+    private final ZoneId zone;
+    private final ZoneRules rules;
+    // offsets[i] applies from transitions[i - 1] (inclusive) up to transitions[i]
+    private final long[] transitions;
+    private final int[] offsets;
+
+    public TimeBuckets(ZoneId zone) {
+        this.zone = zone;
+        this.rules = zone.getRules();
+        long[] transitionTable = new long[16];
+        int[] offsetTable = new int[17];
+        offsetTable[0] = rules.getOffset(Instant.ofEpochMilli(TABLE_START)).getTotalSeconds() * 1000;
+        int count = 0;
+        ZoneOffsetTransition transition = rules.nextTransition(Instant.ofEpochMilli(TABLE_START));
+        while (transition != null && transition.toEpochSecond() * 1000 < TABLE_END) {
+            if (count == transitionTable.length) {
+                transitionTable = Arrays.copyOf(transitionTable, count * 2);
+                offsetTable = Arrays.copyOf(offsetTable, count * 2 + 1);
+            }
+            transitionTable[count] = transition.toEpochSecond() * 1000;
+            offsetTable[count + 1] = transition.getOffsetAfter().getTotalSeconds() * 1000;
+            count++;
+            transition = rules.nextTransition(transition.getInstant());
+        }
+        transitions = Arrays.copyOf(transitionTable, count);
+        offsets = Arrays.copyOf(offsetTable, count + 1);
+    }
+
+    public ZoneId getZone() {
+        return zone;
+    }
+
+    public int offsetMillis(long epochMillis) {
+        if (epochMillis < TABLE_START || epochMillis >= TABLE_END) {
+            // Outside the table, so take the slow path
+            return rules.getOffset(Instant.ofEpochMilli(epochMillis)).getTotalSeconds() * 1000;
+        }
+        // Number of transitions at or before epochMillis
+        int lo = 0;
+        int hi = transitions.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (transitions[mid] <= epochMillis) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return offsets[lo];
+    }
+
+    public long localMillis(long epochMillis) {
+        return epochMillis + offsetMillis(epochMillis);
+    }
+
+    // Days since 1970-01-01 in this zone
+    public long epochDay(long epochMillis) {
+        return Math.floorDiv(localMillis(epochMillis), MILLIS_PER_DAY);
+    }
+
+    // 1 (Monday) to 7 (Sunday), like java.time.DayOfWeek
+    public int dayOfWeek(long epochMillis) {
+        return dayOfWeekOfEpochDay(epochDay(epochMillis));
+    }
+
+    public static int dayOfWeekOfEpochDay(long epochDay) {
+        // 1970-01-01 was a Thursday
+        return (int) Math.floorMod(epochDay + 3, 7) + 1;
+    }
+
+    // 0 to 23
+    public int hour(long epochMillis) {
+        return hourOfLocalMillis(localMillis(epochMillis));
+    }
+
+    public static int hourOfLocalMillis(long localMillis) {
+        return (int) (Math.floorMod(localMillis, MILLIS_PER_DAY) / MILLIS_PER_HOUR);
+    }
+
+    // 1 (January) to 12 (December)
+    public int month(long epochMillis) {
+        return monthOfEpochDay(epochDay(epochMillis));
+    }
+
+    public int year(long epochMillis) {
+        return yearOfEpochDay(epochDay(epochMillis));
+    }
+
+    // Howard Hinnant's civil_from_days, see
+    // https://howardhinnant.github.io/date_algorithms.html#civil_from_days
+    public static int monthOfEpochDay(long epochDay) {
+        long dayOfYear = marchBasedDayOfYear(epochDay);
+        int marchMonth = (int) ((5 * dayOfYear + 2) / 153);
+        return marchMonth < 10 ? marchMonth + 3 : marchMonth - 9;
+    }
+
+    public static int yearOfEpochDay(long epochDay) {
+        long z = epochDay + 719468;
+        long era = Math.floorDiv(z, 146097);
+        long dayOfEra = z - era * 146097;
+        long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        int month = monthOfEpochDay(epochDay);
+        return (int) (yearOfEra + era * 400 + (month <= 2 ? 1 : 0));
+    }
+
+    private static long marchBasedDayOfYear(long epochDay) {
+        long z = epochDay + 719468;
+        long era = Math.floorDiv(z, 146097);
+        long dayOfEra = z - era * 146097;
+        long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        return dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+    }
+}
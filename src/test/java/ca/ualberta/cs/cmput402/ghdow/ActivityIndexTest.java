@@ -0,0 +1,70 @@
+package ca.ualberta.cs.cmput402.ghdow;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ActivityIndexTest {
+
+    private static final ZoneId UTC = ZoneId.of("UTC");
+
+    @TempDir
+    Path tempDir;
+
+    private static long at(String instant) {
+        return Instant.parse(instant).toEpochMilli();
+    }
+
+    @Test
+    void testRangesHeatmapAndStreaks() {
+        CommitTimes times = new CommitTimes();
+        // Three days in a row (Wednesday to Friday), then one more the next week
+        times.addAll("repo1", new long[] {at("2025-01-01T10:00:00Z"), at("2025-01-02T10:30:00Z")});
+        times.addAll("repo2", new long[] {at("2025-01-03T23:00:00Z"), at("2025-01-10T10:00:00Z")});
+        ActivityIndex index = new ActivityIndex(null, "testuser", UTC);
+        assertEquals(4, index.update(times));
+
+        assertEquals(4, index.getCount(LocalDate.of(2025, 1, 1), LocalDate.of(2026, 1, 1)));
+        assertEquals(1, index.getCount("repo2", LocalDate.of(2025, 1, 1), LocalDate.of(2025, 1, 8)));
+        assertArrayEquals(new int[] {3, 1, 0}, index.getCounts(LocalDate.of(2025, 1, 1), LocalDate.of(2025, 1, 22), 7));
+        int[][] heatmap = index.getHeatmap();
+        assertEquals(1, heatmap[2][10]); // Wednesday at 10
+        assertEquals(1, heatmap[4][23]); // Friday at 23
+        assertEquals(1, heatmap[4][10]);
+        assertEquals(0, heatmap[0][10]);
+        assertEquals(3, index.getLongestStreak());
+        assertEquals(1, index.getCurrentStreak(LocalDate.of(2025, 1, 11)));
+        assertEquals(0, index.getCurrentStreak(LocalDate.of(2025, 1, 12)));
+    }
+
+    @Test
+    void testOnlyAddsNewCommits() throws IOException {
+        Path file = tempDir.resolve("activity.bin");
+        CommitTimes first = new CommitTimes();
+        first.addAll("repo1", new long[] {at("2025-03-01T12:00:00Z"), at("2025-03-02T12:00:00Z")});
+        ActivityIndex index = ActivityIndex.open(file, "testuser", UTC);
+        index.update(first);
+        index.save();
+
+        // The next run sees the same commits plus two newer ones, one at the same time as the newest
+        CommitTimes second = new CommitTimes();
+        second.addAll("repo1", new long[] {at("2025-03-01T12:00:00Z"), at("2025-03-02T12:00:00Z"),
+                at("2025-03-02T12:00:00Z"), at("2025-03-03T12:00:00Z")});
+        ActivityIndex reopened = ActivityIndex.open(file, "testuser", UTC);
+        assertEquals(2, reopened.getCommitCount());
+        assertEquals(2, reopened.update(second));
+        assertEquals(0, reopened.update(second));
+        assertEquals(2, reopened.getCount(LocalDate.of(2025, 3, 2)));
+        assertEquals(3, reopened.getLongestStreak());
+
+        // Days are local, so another zone starts over
+        assertEquals(0, ActivityIndex.open(file, "testuser", ZoneId.of("America/Edmonton")).getCommitCount());
+    }
+}
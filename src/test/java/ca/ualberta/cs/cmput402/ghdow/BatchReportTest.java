@@ -0,0 +1,68 @@
+package ca.ualberta.cs.cmput402.ghdow;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class BatchReportTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testReadUsers() throws IOException {
+        Path file = tempDir.resolve("users.txt");
+        Files.writeString(file, "# team\nalice token-a\n\ntoken-b\n");
+        List<BatchReport.User> users = BatchReport.readUsers(file);
+        assertEquals(2, users.size());
+        assertEquals("alice", users.get(0).name);
+        assertEquals("token-a", users.get(0).token);
+        assertNull(users.get(1).name);
+        assertEquals("token-b", users.get(1).token);
+    }
+
+    @Test
+    void testRun() throws IOException {
+        MyGithub alice = mock(MyGithub.class);
+        when(alice.getGithubName()).thenReturn("alice");
+        int[] days = new int[8];
+        days[2] = 2;
+        int[] months = new int[12];
+        months[0] = 2;
+        int[] hours = new int[24];
+        hours[9] = 2;
+        when(alice.getCommitStats()).thenReturn(new CommitStats(2, days, months, hours, 0L, 86400000L));
+        when(alice.getAveragePullRequestDuration()).thenReturn(1.5);
+        when(alice.getAverageCollaborators()).thenReturn(2.0);
+
+        BatchReport batch = new BatchReport(token -> {
+            if (token.equals("bad")) {
+                throw new IOException("Bad credentials");
+            }
+            return alice;
+        }, 2);
+        StringWriter out = new StringWriter();
+        int failures = batch.run(List.of(
+                new BatchReport.User("alice", "good"),
+                new BatchReport.User("bob", "bad")), out);
+
+        // One line per user, the failed one reports its error
+        assertEquals(1, failures);
+        String[] lines = out.toString().split("\n");
+        assertEquals(2, lines.length);
+        String aliceLine = lines[0].contains("alice") ? lines[0] : lines[1];
+        String bobLine = lines[0].contains("alice") ? lines[1] : lines[0];
+        assertTrue(aliceLine.contains("\"commits\":2"));
+        assertTrue(aliceLine.contains("\"mostPopularDay\":\"Monday\""));
+        assertTrue(bobLine.contains("\"login\":\"bob\""));
+        assertTrue(bobLine.contains("\"error\":\"Bad credentials\""));
+    }
+}
@@ -0,0 +1,192 @@
+package ca.ualberta.cs.cmput402.ghdow;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.kohsuke.github.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class CommitCacheTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testSaveAndOpen() throws IOException {
+        Path file = tempDir.resolve("commits.bin");
+        CommitCache cache = CommitCache.open(file, "testuser");
+        cache.append("repo1", new String[] {"c", "a"}, new long[] {3000L, 1000L});
+        // "c" is listed again, and only counted once
+        cache.append("repo1", new String[] {"e", "c"}, new long[] {5000L, 3000L});
+        cache.save();
+
+        // A later run sees the same commits and watermark.
+        CommitCache reopened = CommitCache.open(file, "testuser");
+        assertTrue(reopened.contains("repo1"));
+        assertArrayEquals(new long[] {3000L, 1000L, 5000L}, reopened.getTimes("repo1"));
+        assertEquals(3, reopened.append("repo1", new String[] {"a"}, new long[] {1000L}).length);
+        assertEquals(5000L, reopened.getWatermark("repo1"));
+        assertFalse(reopened.contains("repo2"));
+
+        // Someone else's cache file is ignored rather than mixed in.
+        CommitCache otherUser = CommitCache.open(file, "otheruser");
+        assertFalse(otherUser.contains("repo1"));
+    }
+
+    @Test
+    void testOnlyFetchesNewCommits() throws IOException {
+        Path file = tempDir.resolve("commits.bin");
+        CommitCache cache = CommitCache.open(file, "testuser");
+        cache.append("repo1", new String[] {"a", "b"}, new long[] {1000L, 5000L});
+
+        MyGithub my = new MyGithub("fake_token");
+        GHMyself mockMyself = mock(GHMyself.class);
+        when(mockMyself.getLogin()).thenReturn("testuser");
+        my.myself = mockMyself;
+        my.gitHub = mock(GitHub.class);
+        when(my.gitHub.getMyself()).thenReturn(mockMyself);
+
+        // Since the last run a branch was merged, with a commit older than
+        // the newest one we have. That one is listed again.
+        GHRepository repo = mock(GHRepository.class);
+        when(repo.getName()).thenReturn("repo1");
+        GHCommitQueryBuilder query = mock(GHCommitQueryBuilder.class, RETURNS_SELF);
+        when(query.list()).thenReturn(MockPages.paged(List.of(commit("b", 5000L), commit("c", 3000L))));
+        when(repo.queryCommits()).thenReturn(query);
+        my.myRepos = new HashMap<>();
+        my.myRepos.put("repo1", repo);
+
+        my.setCommitCache(cache);
+        assertEquals(3, my.getCommitTimes().size());
+        // Only commits from 30 days before the watermark on are asked for, and the cache is saved.
+        verify(query).since(new Date(5000L - 30 * TimeBuckets.MILLIS_PER_DAY));
+        assertTrue(Files.exists(file));
+    }
+
+    @Test
+    void testMatchingEmailsIsCached() throws IOException {
+        Path file = tempDir.resolve("commits.bin");
+        CommitCache cache = CommitCache.open(file, "testuser+emails");
+
+        MyGithub my = new MyGithub("fake_token");
+        GHMyself mockMyself = mock(GHMyself.class);
+        when(mockMyself.getLogin()).thenReturn("testuser");
+        my.myself = mockMyself;
+
+        // Everyone's commits are listed once: one of ours by email, one GitHub
+        // linked to our login, and two by someone else with the same email
+        GHUser us = mock(GHUser.class);
+        when(us.getLogin()).thenReturn("TestUser");
+        GHUser other = mock(GHUser.class);
+        when(other.getLogin()).thenReturn("other");
+        GHCommit someoneElse = commit("d", 1500L, "other@example.com", other);
+        List<GHCommit> commits = List.of(
+                commit("a", 3000L, "TestUser@users.noreply.github.com", null),
+                someoneElse,
+                commit("b", 1000L, "laptop@example.com", us),
+                commit("c", 500L, "other@example.com", other));
+        GHRepository repo = mock(GHRepository.class);
+        when(repo.getName()).thenReturn("repo1");
+        GHCommitQueryBuilder query = mock(GHCommitQueryBuilder.class, RETURNS_SELF);
+        when(query.list()).thenReturn(MockPages.paged(commits));
+        when(repo.queryCommits()).thenReturn(query);
+        my.myRepos = new HashMap<>();
+        my.myRepos.put("repo1", repo);
+
+        my.setMatchAuthorEmails(true);
+        my.setCommitCache(cache);
+        assertEquals(2, my.getCommitTimes().size());
+        verify(query, never()).author(anyString());
+        verify(query, times(1)).list();
+        // The other author's login was looked up once, for both their commits
+        verify(someoneElse, times(1)).getAuthor();
+        assertEquals(2, CommitCache.open(file, "testuser+emails").getTimes("repo1").length);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testResumesUnfinishedLoad() throws IOException {
+        Path file = tempDir.resolve("commits.bin");
+        CommitCache cache = CommitCache.open(file, "testuser");
+
+        MyGithub my = new MyGithub("fake_token");
+        my.scheduler = new RequestScheduler(1, 10);
+        GHMyself mockMyself = mock(GHMyself.class);
+        when(mockMyself.getLogin()).thenReturn("testuser");
+        my.myself = mockMyself;
+
+        // 200 commits a second apart, newest first
+        List<GHCommit> commits = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            commits.add(commit("sha" + i, (200 - i) * 1000L));
+        }
+        // The first attempt fails after a page and a half. By the second a
+        // commit dated after where the first stopped shows up further down.
+        List<GHCommit> relisted = new ArrayList<>(commits);
+        relisted.add(180, commit("late", 150500L));
+        PagedIterator<GHCommit> failing = pages(commits.subList(0, 150), true);
+        PagedIterator<GHCommit> resumed = pages(relisted, false);
+        @SuppressWarnings("unchecked")
+        PagedIterable<GHCommit> list = mock(PagedIterable.class);
+        when(list.iterator()).thenReturn(failing, resumed);
+        GHRepository repo = mock(GHRepository.class);
+        when(repo.getName()).thenReturn("repo1");
+        GHCommitQueryBuilder query = mock(GHCommitQueryBuilder.class, RETURNS_SELF);
+        when(query.list()).thenReturn(list);
+        when(repo.queryCommits()).thenReturn(query);
+        my.myRepos = new HashMap<>();
+        my.myRepos.put("repo1", repo);
+
+        my.setCommitCache(cache);
+        assertEquals(201, my.getCommitTimes().size());
+        assertTrue(my.getFailedRepos().isEmpty());
+        verify(query, never()).until(any(Date.class));
+
+        CommitCache reopened = CommitCache.open(file, "testuser");
+        assertTrue(reopened.isComplete("repo1"));
+        assertEquals(201, reopened.getTimes("repo1").length);
+        assertEquals(200000L, reopened.getWatermark("repo1"));
+    }
+
+    private static GHCommit commit(String sha, long time) throws IOException {
+        GHCommit commit = mock(GHCommit.class);
+        when(commit.getSHA1()).thenReturn(sha);
+        when(commit.getCommitDate()).thenReturn(new Date(time));
+        return commit;
+    }
+
+    private static GHCommit commit(String sha, long time, String email, GHUser author) throws IOException {
+        GHCommit commit = commit(sha, time);
+        GitUser user = mock(GitUser.class);
+        when(user.getEmail()).thenReturn(email);
+        GHCommit.ShortInfo info = mock(GHCommit.ShortInfo.class);
+        when(info.getAuthor()).thenReturn(user);
+        when(commit.getCommitShortInfo()).thenReturn(info);
+        when(commit.getAuthor()).thenReturn(author);
+        return commit;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static PagedIterator<GHCommit> pages(List<GHCommit> commits, boolean failAtEnd) {
+        Iterator<GHCommit> iterator = commits.iterator();
+        PagedIterator<GHCommit> pages = mock(PagedIterator.class);
+        when(pages.hasNext()).thenAnswer(invocation -> {
+            if (failAtEnd && !iterator.hasNext()) {
+                throw new GHException("Failed to retrieve commits", new IOException("Connection reset"));
+            }
+            return iterator.hasNext();
+        });
+        when(pages.next()).thenAnswer(invocation -> iterator.next());
+        return pages;
+    }
+}
@@ -0,0 +1,51 @@
+package ca.ualberta.cs.cmput402.ghdow;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.ZoneId;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CommitTimesTest {
+
+    // Ten years of commits spread over a few repositories, in no particular order
+    private static CommitTimes randomCommits(int count) {
+        Random random = new Random(count);
+        CommitTimes times = new CommitTimes();
+        for (int repo = 0; repo < 5; repo++) {
+            times.repoId("repo" + repo);
+        }
+        for (int i = 0; i < count; i++) {
+            times.add(1_400_000_000_000L + (long) (random.nextDouble() * 315_360_000_000L), random.nextInt(5));
+        }
+        return times;
+    }
+
+    @Test
+    void testParallelStatsMatchSinglePass() {
+        CommitTimes times = randomCommits(CommitStatsAccumulator.PARALLEL_THRESHOLD * 3);
+        TimeBuckets buckets = new TimeBuckets(ZoneId.of("America/Edmonton"));
+        CommitStatsAccumulator single = new CommitStatsAccumulator(buckets);
+        for (int i = 0; i < times.size(); i++) {
+            single.add(times.getTime(i));
+        }
+        CommitStats expected = single.getResult();
+
+        CommitStats parallel = CommitStatsAccumulator.of(times, buckets);
+        assertEquals(expected.getCommitCount(), parallel.getCommitCount());
+        assertEquals(expected.getMostPopularDay(), parallel.getMostPopularDay());
+        assertEquals(expected.getMostPopularMonth(), parallel.getMostPopularMonth());
+        assertEquals(expected.getMostPopularHour(), parallel.getMostPopularHour());
+        assertEquals(expected.getAverageTimeBetweenCommits(), parallel.getAverageTimeBetweenCommits(), 1e-12);
+    }
+
+    @Test
+    void testAddAfterTrimmingEmpty() {
+        CommitTimes times = new CommitTimes();
+        times.trimToSize();
+        times.addAll("repo1", new long[] {2000L, 1000L});
+        assertEquals(2, times.size());
+        assertEquals(1000L, times.getTime(1));
+    }
+}
@@ -0,0 +1,158 @@
+package ca.ualberta.cs.cmput402.ghdow;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.kohsuke.github.connector.GitHubConnectorRequest;
+import org.kohsuke.github.connector.GitHubConnectorResponse;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConditionalRequestCacheTest {
+
+    @TempDir
+    Path tempDir;
+
+    // What the fake GitHub saw, one If-None-Match value (or null) per request
+    private final List<String> sentEtags = new ArrayList<>();
+
+    @Test
+    void testReplaysNotModified() throws IOException {
+        ConditionalRequestCache cache = new ConditionalRequestCache(this::fakeGitHub, tempDir, 1024 * 1024);
+
+        assertEquals("[\"repo1\"]", body(cache.send(new FakeRequest("https://api.github.com/user/repos"))));
+        GitHubConnectorResponse replayed = cache.send(new FakeRequest("https://api.github.com/user/repos"));
+
+        // The second request was conditional and got the saved body back from a 304.
+        assertEquals(Arrays.asList(null, "\"v1\""), sentEtags);
+        assertEquals(200, replayed.statusCode());
+        assertEquals("[\"repo1\"]", body(replayed));
+        // The rate limit headers come from the 304, not from the saved response.
+        assertEquals("4998", replayed.header("X-RateLimit-Remaining"));
+
+        // A new cache over the same directory still has the response.
+        ConditionalRequestCache reopened = new ConditionalRequestCache(this::fakeGitHub, tempDir, 1024 * 1024);
+        assertEquals(1, reopened.getEntryCount());
+    }
+
+    @Test
+    void testReplayedBodiesAreNotCountedAsReceived() throws IOException {
+        RequestMetrics metrics = new RequestMetrics();
+        InstrumentedConnector connector = new InstrumentedConnector(
+                new ConditionalRequestCache(this::fakeGitHub, tempDir, 1024 * 1024), metrics);
+
+        body(connector.send(new FakeRequest("https://api.github.com/user/repos")));
+        assertEquals(10, metrics.getBytesReceived());
+        // The 304 has no body, what we read came from disk
+        body(connector.send(new FakeRequest("https://api.github.com/user/repos")));
+        assertEquals(10, metrics.getBytesReceived());
+        assertEquals(10, metrics.getBytesFromCache());
+    }
+
+    @Test
+    void testEvictsLeastRecentlyUsed() throws IOException {
+        ConditionalRequestCache cache = new ConditionalRequestCache(this::fakeGitHub, tempDir, 1024 * 1024);
+        cache.send(new FakeRequest("https://api.github.com/repos/a"));
+        long oneEntry = cache.getTotalBytes();
+
+        // Room for two responses only.
+        cache = new ConditionalRequestCache(this::fakeGitHub, tempDir, oneEntry * 2);
+        cache.send(new FakeRequest("https://api.github.com/repos/b"));
+        cache.send(new FakeRequest("https://api.github.com/repos/a"));
+        cache.send(new FakeRequest("https://api.github.com/repos/c"));
+        assertEquals(2, cache.getEntryCount());
+        assertTrue(cache.getTotalBytes() <= oneEntry * 2);
+
+        // "b" was the least recently used, so asking again is unconditional.
+        sentEtags.clear();
+        cache.send(new FakeRequest("https://api.github.com/repos/b"));
+        cache.send(new FakeRequest("https://api.github.com/repos/c"));
+        assertEquals(Arrays.asList(null, "\"v1\""), sentEtags);
+    }
+
+    private GitHubConnectorResponse fakeGitHub(GitHubConnectorRequest request) {
+        String etag = request.header("If-None-Match");
+        sentEtags.add(etag);
+        Map<String, List<String>> headers = new HashMap<>();
+        headers.put("X-RateLimit-Remaining", List.of(etag == null ? "4999" : "4998"));
+        if ("\"v1\"".equals(etag)) {
+            return new FakeResponse(request, 304, headers, "");
+        }
+        headers.put("ETag", List.of("\"v1\""));
+        return new FakeResponse(request, 200, headers, "[\"repo1\"]");
+    }
+
+    private static String body(GitHubConnectorResponse response) throws IOException {
+        try (InputStream in = response.bodyStream()) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static class FakeRequest implements GitHubConnectorRequest {
+        private final URL url;
+
+        FakeRequest(String url) throws IOException {
+            this.url = new URL(url);
+        }
+
+        @Override
+        public String method() {
+            return "GET";
+        }
+
+        @Override
+        public Map<String, List<String>> allHeaders() {
+            return Map.of("Authorization", List.of("token fake_token"));
+        }
+
+        @Override
+        public String header(String name) {
+            return name.equalsIgnoreCase("Authorization") ? "token fake_token" : null;
+        }
+
+        @Override
+        public String contentType() {
+            return null;
+        }
+
+        @Override
+        public InputStream body() {
+            return null;
+        }
+
+        @Override
+        public URL url() {
+            return url;
+        }
+
+        @Override
+        public boolean hasBody() {
+            return false;
+        }
+    }
+
+    private static class FakeResponse extends GitHubConnectorResponse {
+        private final byte[] body;
+
+        FakeResponse(GitHubConnectorRequest request, int statusCode, Map<String, List<String>> headers, String body) {
+            super(request, statusCode, headers);
+            this.body = body.getBytes(StandardCharsets.UTF_8);
+        }
+
+        @Override
+        protected InputStream rawBodyStream() {
+            return new ByteArrayInputStream(body);
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,514 @@
+package ca.ualberta.cs.cmput402.ghdow;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+// A local stand-in for the GitHub REST API, serving made-up users, repositories,
+// commits, pull requests, issues and collaborators. Lists are paginated with
+// Link headers and every response carries X-RateLimit-* headers, so MyGithub
+// (pointed at getEndpoint()) goes through the same paging, pacing and retries
+// it does against GitHub. The token is the login, e.g. "user0".
+//
+// Configure it with the setters, then start(). The data comes from a seeded
+// Random, so the same settings always give the same data.
+class FakeGitHub {
+    static final String OWNER = "fake-org";
+    // Newest commit time, so runs don't depend on the clock
+    static final long NEWEST = Instant.parse("2024-06-01T00:00:00Z").toEpochMilli();
+    private static final long DAY = 24 * 60 * 60 * 1000;
+
+    private final HttpServer server;
+    private final ExecutorService handlers;
+    private final AtomicInteger requestCount = new AtomicInteger();
+
+    private int users = 1;
+    private int repos = 3;
+    private int commitsPerRepo = 250;
+    private int pullRequestsPerRepo = 50;
+    private int collaboratorsPerRepo = 3;
+    private int openIssuesPerRepo = 2;
+    private long latencyMillis;
+    private int maxPageSize = 100;
+    private int rateLimit = 5000;
+    private long rateLimitWindowMillis = 60 * 60 * 1000;
+    private double errorRate;
+    private long seed = 1;
+
+    private Random errors;
+    private final Map<String, Quota> quotas = new HashMap<>();
+
+    // Per repository: commit times newest first, who made each one, and the
+    // positions of each user's commits
+    private long[][] commitTimes;
+    private int[][] commitAuthors;
+    private int[][] allCommits;
+    private int[][][] commitsByAuthor;
+    // Per repository: pull requests most recently closed first, and also newest first
+    private long[][] pullCreated;
+    private long[][] pullClosed;
+    private int[][] pullsByCreated;
+
+    private static class Quota {
+        long resetAt;
+        int used;
+    }
+
+    // The handler threads sleep for the latency, so have as many as there
+    // will be requests in flight
+    FakeGitHub(int threads) throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        handlers = Executors.newFixedThreadPool(threads);
+        server.setExecutor(handlers);
+        server.createContext("/", this::handle);
+    }
+
+    FakeGitHub() throws IOException {
+        this(16);
+    }
+
+    // The users are user0, user1, ... and split the commits between them
+    void setUsers(int users) {
+        this.users = users;
+    }
+
+    // Every user can see every repository
+    void setRepos(int repos) {
+        this.repos = repos;
+    }
+
+    void setCommitsPerRepo(int commitsPerRepo) {
+        this.commitsPerRepo = commitsPerRepo;
+    }
+
+    void setPullRequestsPerRepo(int pullRequestsPerRepo) {
+        this.pullRequestsPerRepo = pullRequestsPerRepo;
+    }
+
+    void setCollaboratorsPerRepo(int collaboratorsPerRepo) {
+        this.collaboratorsPerRepo = collaboratorsPerRepo;
+    }
+
+    void setOpenIssuesPerRepo(int openIssuesPerRepo) {
+        this.openIssuesPerRepo = openIssuesPerRepo;
+    }
+
+    // Added to every response
+    void setLatencyMillis(long latencyMillis) {
+        this.latencyMillis = latencyMillis;
+    }
+
+    // Larger per_page values are cut down to this, as GitHub does at 100
+    void setMaxPageSize(int maxPageSize) {
+        this.maxPageSize = maxPageSize;
+    }
+
+    // Requests per token per window; past that the answer is a 403 until the window resets
+    void setRateLimit(int rateLimit, long windowMillis) {
+        this.rateLimit = rateLimit;
+        this.rateLimitWindowMillis = windowMillis;
+    }
+
+    // Fraction of requests that fail with a 502
+    void setErrorRate(double errorRate) {
+        this.errorRate = errorRate;
+    }
+
+    void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    void start() {
+        generate();
+        server.start();
+    }
+
+    void stop() {
+        server.stop(0);
+        handlers.shutdownNow();
+    }
+
+    String getEndpoint() {
+        return "http://localhost:" + server.getAddress().getPort();
+    }
+
+    // Requests answered so far, failed ones included
+    int getRequestCount() {
+        return requestCount.get();
+    }
+
+    // What MyGithub should find, worked out from the data rather than over HTTP
+
+    long[] getCommitTimes(String login) {
+        int user = userIndex(login);
+        long[] times = new long[0];
+        if (user < 0) return times;
+        for (int repo = 0; repo < repos; repo++) {
+            int[] mine = commitsByAuthor[repo][user];
+            int start = times.length;
+            times = Arrays.copyOf(times, start + mine.length);
+            for (int i = 0; i < mine.length; i++) {
+                times[start + i] = commitTimes[repo][mine[i]];
+            }
+        }
+        return times;
+    }
+
+    double getAveragePullRequestDuration() {
+        long total = 0;
+        int count = 0;
+        for (int repo = 0; repo < repos; repo++) {
+            for (int i = 0; i < pullRequestsPerRepo; i++) {
+                total += pullClosed[repo][i] - pullCreated[repo][i];
+                count++;
+            }
+        }
+        return count == 0 ? 0 : total / (count * 1000.0 * 60 * 60 * 24);
+    }
+
+    private void generate() {
+        Random random = new Random(seed);
+        errors = new Random(seed);
+        commitTimes = new long[repos][commitsPerRepo];
+        commitAuthors = new int[repos][commitsPerRepo];
+        allCommits = new int[repos][];
+        commitsByAuthor = new int[repos][users][];
+        pullCreated = new long[repos][pullRequestsPerRepo];
+        pullClosed = new long[repos][pullRequestsPerRepo];
+        pullsByCreated = new int[repos][];
+        for (int repo = 0; repo < repos; repo++) {
+            // Whole seconds, up to two days apart, like real commit dates
+            long time = NEWEST - random.nextInt(30) * DAY;
+            int[] counts = new int[users];
+            for (int i = 0; i < commitsPerRepo; i++) {
+                commitTimes[repo][i] = time;
+                commitAuthors[repo][i] = random.nextInt(users);
+                counts[commitAuthors[repo][i]]++;
+                time -= random.nextInt((int) (2 * DAY / 1000)) * 1000L;
+            }
+            allCommits[repo] = new int[commitsPerRepo];
+            for (int user = 0; user < users; user++) {
+                commitsByAuthor[repo][user] = new int[counts[user]];
+            }
+            Arrays.fill(counts, 0);
+            for (int i = 0; i < commitsPerRepo; i++) {
+                allCommits[repo][i] = i;
+                int user = commitAuthors[repo][i];
+                commitsByAuthor[repo][user][counts[user]++] = i;
+            }
+
+            // Open for up to 30 days, closed some time in the last three years
+            long closed = NEWEST;
+            for (int i = 0; i < pullRequestsPerRepo; i++) {
+                closed -= random.nextInt((int) (3 * 365 * DAY / 1000 / Math.max(1, pullRequestsPerRepo))) * 1000L;
+                pullClosed[repo][i] = closed;
+                pullCreated[repo][i] = closed - random.nextInt((int) (30 * DAY / 1000)) * 1000L;
+            }
+            long[] created = pullCreated[repo];
+            pullsByCreated[repo] = IntStream.range(0, pullRequestsPerRepo).boxed()
+                    .sorted(Comparator.comparingLong((Integer i) -> created[i]).reversed())
+                    .mapToInt(Integer::intValue).toArray();
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            requestCount.incrementAndGet();
+            if (latencyMillis > 0) {
+                try {
+                    Thread.sleep(latencyMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+            if (errorRate > 0 && nextError()) {
+                respond(exchange, 502, message("Server Error"));
+                return;
+            }
+            String login = login(exchange);
+            int user = userIndex(login);
+            if (user < 0) {
+                respond(exchange, 401, message("Bad credentials"));
+                return;
+            }
+            if (!takeQuota(exchange, login)) {
+                respond(exchange, 403, message("API rate limit exceeded for user " + login + "."));
+                return;
+            }
+            if (!exchange.getRequestMethod().equals("GET")) {
+                respond(exchange, 405, message("Only GET is supported"));
+                return;
+            }
+            route(exchange, login, user);
+        }
+    }
+
+    private synchronized boolean nextError() {
+        return errors.nextDouble() < errorRate;
+    }
+
+    private void route(HttpExchange exchange, String login, int user) throws IOException {
+        String[] path = exchange.getRequestURI().getPath().split("/");
+        if (path.length == 2 && path[1].equals("user")) {
+            respond(exchange, 200, user(login, user));
+        } else if (path.length == 3 && path[1].equals("user") && path[2].equals("emails")) {
+            respond(exchange, 200, "[{\"email\":\"" + email(user) + "\",\"primary\":true,\"verified\":true,"
+                    + "\"visibility\":\"public\"}]");
+        } else if ((path.length == 3 && path[1].equals("user") && path[2].equals("repos"))
+                || (path.length == 4 && path[1].equals("users") && path[3].equals("repos"))) {
+            respondPage(exchange, repos, i -> repo(i));
+        } else if (path.length >= 4 && path[1].equals("repos") && path[2].equals(OWNER)) {
+            int repo = repoIndex(path[3]);
+            if (repo < 0) {
+                respond(exchange, 404, message("Not Found"));
+            } else if (path.length == 4) {
+                respond(exchange, 200, repo(repo));
+            } else if (path.length == 5 && path[4].equals("commits")) {
+                commits(exchange, repo);
+            } else if (path.length == 5 && path[4].equals("pulls")) {
+                boolean closed = "closed".equals(parameter(exchange, "state"));
+                respondPage(exchange, closed ? pullRequestsPerRepo : 0, i -> pullRequest(repo, i, true));
+            } else if (path.length == 5 && path[4].equals("issues")) {
+                boolean closed = "closed".equals(parameter(exchange, "state"));
+                respondPage(exchange, closed ? pullRequestsPerRepo : 0,
+                        i -> pullRequest(repo, pullsByCreated[repo][i], false));
+            } else if (path.length == 5 && path[4].equals("collaborators")) {
+                respondPage(exchange, collaboratorsPerRepo, i -> user(collaborator(i), i));
+            } else {
+                respond(exchange, 404, message("Not Found"));
+            }
+        } else {
+            respond(exchange, 404, message("Not Found"));
+        }
+    }
+
+    // Filtered by author (login or email), since and until like GitHub does
+    private void commits(HttpExchange exchange, int repo) throws IOException {
+        String author = parameter(exchange, "author");
+        int[] commits;
+        if (author == null) {
+            commits = allCommits[repo];
+        } else {
+            int user = userIndex(author.endsWith("@example.com")
+                    ? author.substring(0, author.indexOf('@')) : author);
+            commits = user < 0 ? new int[0] : commitsByAuthor[repo][user];
+        }
+        String since = parameter(exchange, "since");
+        String until = parameter(exchange, "until");
+        long[] times = commitTimes[repo];
+        int start = until == null ? 0 : firstAtOrBefore(commits, times, Instant.parse(until).toEpochMilli());
+        int end = since == null ? commits.length
+                : firstAtOrBefore(commits, times, Instant.parse(since).toEpochMilli() - 1);
+        int[] range = commits;
+        respondPage(exchange, Math.max(0, end - start), i -> commit(repo, range[start + i]));
+    }
+
+    // Index of the first of `commits` (newest first) made at or before `time`
+    private static int firstAtOrBefore(int[] commits, long[] times, long time) {
+        int low = 0;
+        int high = commits.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (times[commits[middle]] > time) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private interface Item {
+        String json(int index);
+    }
+
+    // One page of `count` items, with a Link header to the next page if there is one
+    private void respondPage(HttpExchange exchange, int count, Item item) throws IOException {
+        String pageParameter = parameter(exchange, "page");
+        String perPageParameter = parameter(exchange, "per_page");
+        int page = pageParameter == null ? 1 : Integer.parseInt(pageParameter);
+        int perPage = Math.min(maxPageSize, perPageParameter == null ? 30 : Integer.parseInt(perPageParameter));
+        int from = (page - 1) * perPage;
+        int to = Math.min(count, from + perPage);
+        StringBuilder json = new StringBuilder("[");
+        for (int i = from; i < to; i++) {
+            if (i > from) json.append(',');
+            json.append(item.json(i));
+        }
+        json.append(']');
+        if (to < count) {
+            int last = (count + perPage - 1) / perPage;
+            exchange.getResponseHeaders().set("Link", "<" + pageUrl(exchange, page + 1, perPage) + ">; rel=\"next\", <"
+                    + pageUrl(exchange, last, perPage) + ">; rel=\"last\"");
+        }
+        respond(exchange, 200, json.toString());
+    }
+
+    private String pageUrl(HttpExchange exchange, int page, int perPage) {
+        StringBuilder url = new StringBuilder(getEndpoint()).append(exchange.getRequestURI().getRawPath()).append('?');
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query != null) {
+            for (String parameter : query.split("&")) {
+                if (!parameter.startsWith("page=") && !parameter.startsWith("per_page=")) {
+                    url.append(parameter).append('&');
+                }
+            }
+        }
+        return url.append("page=").append(page).append("&per_page=").append(perPage).toString();
+    }
+
+    // Counts the request against the token's quota; false once it's used up
+    private boolean takeQuota(HttpExchange exchange, String login) {
+        int remaining;
+        long resetAt;
+        boolean allowed;
+        synchronized (quotas) {
+            Quota quota = quotas.computeIfAbsent(login, l -> new Quota());
+            long now = System.currentTimeMillis();
+            if (now >= quota.resetAt) {
+                quota.resetAt = now + rateLimitWindowMillis;
+                quota.used = 0;
+            }
+            allowed = quota.used < rateLimit;
+            if (allowed) {
+                quota.used++;
+            }
+            remaining = rateLimit - quota.used;
+            resetAt = quota.resetAt;
+        }
+        exchange.getResponseHeaders().set("X-RateLimit-Limit", String.valueOf(rateLimit));
+        exchange.getResponseHeaders().set("X-RateLimit-Remaining", String.valueOf(remaining));
+        exchange.getResponseHeaders().set("X-RateLimit-Used", String.valueOf(rateLimit - remaining));
+        // Whole seconds, rounded up so we never say it's reset before it has
+        exchange.getResponseHeaders().set("X-RateLimit-Reset", String.valueOf((resetAt + 999) / 1000));
+        exchange.getResponseHeaders().set("X-RateLimit-Resource", "core");
+        return allowed;
+    }
+
+    private String user(String login, int id) {
+        return "{\"login\":\"" + login + "\",\"id\":" + (id + 1) + ",\"node_id\":\"U_" + (id + 1) + "\","
+                + "\"type\":\"User\",\"site_admin\":false,"
+                + "\"url\":\"" + getEndpoint() + "/users/" + login + "\","
+                + "\"html_url\":\"https://github.com/" + login + "\"}";
+    }
+
+    private String repo(int repo) {
+        String name = "repo" + repo;
+        String pushed = date(commitsPerRepo == 0 ? NEWEST : commitTimes[repo][0]);
+        return "{\"id\":" + (1000 + repo) + ",\"node_id\":\"R_" + repo + "\","
+                + "\"name\":\"" + name + "\",\"full_name\":\"" + OWNER + "/" + name + "\","
+                + "\"private\":false,\"fork\":false,"
+                + "\"owner\":{\"login\":\"" + OWNER + "\",\"id\":999,\"type\":\"Organization\"},"
+                + "\"url\":\"" + getEndpoint() + "/repos/" + OWNER + "/" + name + "\","
+                + "\"html_url\":\"https://github.com/" + OWNER + "/" + name + "\","
+                + "\"open_issues_count\":" + openIssuesPerRepo + ","
+                + "\"default_branch\":\"main\","
+                + "\"created_at\":\"" + date(NEWEST - 3 * 365 * DAY) + "\","
+                + "\"updated_at\":\"" + pushed + "\",\"pushed_at\":\"" + pushed + "\"}";
+    }
+
+    private String commit(int repo, int index) {
+        int user = commitAuthors[repo][index];
+        String login = "user" + user;
+        String person = "{\"name\":\"" + login + "\",\"email\":\"" + email(user) + "\","
+                + "\"date\":\"" + date(commitTimes[repo][index]) + "\"}";
+        String sha = String.format("%024x%016x", repo, index);
+        return "{\"sha\":\"" + sha + "\","
+                + "\"url\":\"" + getEndpoint() + "/repos/" + OWNER + "/repo" + repo + "/commits/" + sha + "\","
+                + "\"commit\":{\"author\":" + person + ",\"committer\":" + person + ","
+                + "\"message\":\"Commit " + index + "\",\"comment_count\":0},"
+                + "\"author\":" + user(login, user) + ",\"committer\":" + user(login, user) + ","
+                + "\"parents\":[]}";
+    }
+
+    // As a pull request, or as the issue GitHub also lists it as
+    private String pullRequest(int repo, int index, boolean asPullRequest) {
+        int number = index + 1;
+        String url = getEndpoint() + "/repos/" + OWNER + "/repo" + repo + (asPullRequest ? "/pulls/" : "/issues/")
+                + number;
+        String closed = date(pullClosed[repo][index]);
+        return "{\"id\":" + ((long) repo * 1_000_000 + number) + ",\"number\":" + number + ","
+                + "\"state\":\"closed\",\"title\":\"Change " + number + "\","
+                + "\"user\":" + user("user0", 0) + ","
+                + "\"url\":\"" + url + "\",\"html_url\":\"https://github.com/" + OWNER + "/repo" + repo + "/pull/"
+                + number + "\","
+                + "\"created_at\":\"" + date(pullCreated[repo][index]) + "\","
+                + "\"updated_at\":\"" + closed + "\",\"closed_at\":\"" + closed + "\"}";
+    }
+
+    private String collaborator(int i) {
+        return i < users ? "user" + i : "collaborator" + i;
+    }
+
+    private static String email(int user) {
+        return "user" + user + "@example.com";
+    }
+
+    private static String date(long millis) {
+        return Instant.ofEpochMilli(millis).toString();
+    }
+
+    private static String message(String message) {
+        return "{\"message\":\"" + message + "\",\"documentation_url\":\"https://docs.github.com/rest\"}";
+    }
+
+    private int userIndex(String login) {
+        if (login == null || !login.startsWith("user")) return -1;
+        try {
+            int user = Integer.parseInt(login.substring(4));
+            return user >= 0 && user < users ? user : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private int repoIndex(String name) {
+        if (!name.startsWith("repo")) return -1;
+        try {
+            int repo = Integer.parseInt(name.substring(4));
+            return repo >= 0 && repo < repos ? repo : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    // "Authorization: token user0" (or Bearer)
+    private static String login(HttpExchange exchange) {
+        String authorization = exchange.getRequestHeaders().getFirst("Authorization");
+        if (authorization == null) return null;
+        return authorization.substring(authorization.indexOf(' ') + 1).strip();
+    }
+
+    private static String parameter(HttpExchange exchange, String name) {
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query == null) return null;
+        for (String parameter : query.split("&")) {
+            int equals = parameter.indexOf('=');
+            if (equals > 0 && parameter.substring(0, equals).equals(name)) {
+                return URLDecoder.decode(parameter.substring(equals + 1), StandardCharsets.UTF_8);
+            }
+        }
+        return null;
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
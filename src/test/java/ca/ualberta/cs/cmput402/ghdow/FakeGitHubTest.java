@@ -0,0 +1,58 @@
+package ca.ualberta.cs.cmput402.ghdow;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.kohsuke.github.extras.HttpClientGitHubConnector;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// MyGithub against FakeGitHub over real HTTP, so paging and retries are exercised
+class FakeGitHubTest {
+
+    private FakeGitHub fake;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        fake = new FakeGitHub();
+        fake.setUsers(2);
+        fake.setRepos(3);
+        // Several pages of each
+        fake.setCommitsPerRepo(450);
+        fake.setPullRequestsPerRepo(120);
+        fake.setCollaboratorsPerRepo(3);
+    }
+
+    @AfterEach
+    void tearDown() {
+        fake.stop();
+    }
+
+    private MyGithub connect(String login) throws IOException {
+        return new MyGithub(login, fake.getEndpoint(), new HttpClientGitHubConnector(),
+                new RequestScheduler(1, 10), null);
+    }
+
+    @Test
+    void testReadsEveryPage() throws IOException {
+        fake.start();
+        MyGithub my = connect("user0");
+
+        assertEquals(fake.getCommitTimes("user0").length, my.getCommitStats().getCommitCount());
+        assertEquals(fake.getAveragePullRequestDuration(), my.getAveragePullRequestDuration(), 1e-9);
+        assertEquals(3.0, my.getAverageCollaborators());
+        assertTrue(my.getFailedRepos().isEmpty());
+    }
+
+    @Test
+    void testRetriesServerErrors() throws IOException {
+        fake.setErrorRate(0.1);
+        fake.start();
+        MyGithub my = connect("user1");
+
+        assertEquals(fake.getCommitTimes("user1").length, my.getCommitStats().getCommitCount());
+        assertEquals(fake.getAveragePullRequestDuration(), my.getAveragePullRequestDuration(), 1e-9);
+    }
+}
@@ -0,0 +1,113 @@
+package ca.ualberta.cs.cmput402.ghdow;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GraphQLDataSourceTest {
+
+    // Two repositories. repo1 has a second page of closed pull requests,
+    // and we can't see repo2's collaborators.
+    private static final String REPOSITORIES = """
+            {"data": {"viewer": {"repositories": {
+              "pageInfo": {"hasNextPage": false, "endCursor": "repos1"},
+              "nodes": [
+                {"id": "R_1",
+                 "issues": {"totalCount": 2},
+                 "openPullRequests": {"totalCount": 1},
+                 "collaborators": {"totalCount": 3},
+                 "closedPullRequests": {
+                   "pageInfo": {"hasNextPage": true, "endCursor": "prs1"},
+                   "nodes": [{"createdAt": "2024-01-01T00:00:00Z", "closedAt": "2024-01-03T00:00:00Z"}]}},
+                {"id": "R_2",
+                 "issues": {"totalCount": 4},
+                 "openPullRequests": {"totalCount": 0},
+                 "collaborators": null,
+                 "closedPullRequests": {
+                   "pageInfo": {"hasNextPage": false, "endCursor": null},
+                   "nodes": [{"createdAt": "2024-02-01T00:00:00Z", "closedAt": null}]}}
+              ]}}},
+             "errors": [{"message": "Must have push access to view repository collaborators."}]}""";
+
+    private static final String PULL_REQUESTS = """
+            {"data": {"node": {"closedPullRequests": {
+              "pageInfo": {"hasNextPage": false, "endCursor": "prs2"},
+              "nodes": [{"createdAt": "2024-03-01T00:00:00Z", "closedAt": "2024-03-05T00:00:00Z"}]}}}}""";
+
+    private HttpServer server;
+    private final List<String> requests = new CopyOnWriteArrayList<>();
+    private final List<String> authorizations = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/graphql", this::handle);
+        server.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        String request = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+        requests.add(request);
+        authorizations.add(exchange.getRequestHeaders().getFirst("Authorization"));
+        byte[] response = (request.contains("viewer") ? REPOSITORIES : PULL_REQUESTS).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, response.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(response);
+        }
+    }
+
+    private GraphQLDataSource dataSource() {
+        String endpoint = "http://127.0.0.1:" + server.getAddress().getPort() + "/graphql";
+        return new GraphQLDataSource(new GraphQLClient("fake_token", endpoint, HttpClient.newHttpClient()));
+    }
+
+    @Test
+    void testFetch() throws IOException {
+        RepoAggregates totals = dataSource().fetch();
+
+        assertEquals(2, totals.getRepoCount());
+        // (2 issues + 1 pull request + 4 issues) / 2 repositories.
+        assertEquals(3.5, totals.getAverageOpenIssues(), 0.01);
+        // Only repo1's collaborators are visible.
+        assertEquals(3.0, totals.getAverageCollaborators(), 0.01);
+        // 2 days and 4 days; the pull request without closedAt doesn't count.
+        assertEquals(2, totals.getPullRequestCount());
+        assertEquals(3.0, totals.getAveragePullRequestDuration(), 0.01);
+
+        // One query for the repositories, one for repo1's second page of pull requests.
+        assertEquals(2, requests.size());
+        assertTrue(requests.get(1).contains("\"id\":\"R_1\""));
+        assertTrue(requests.get(1).contains("\"cursor\":\"prs1\""));
+        assertEquals("bearer fake_token", authorizations.get(0));
+    }
+
+    @Test
+    void testMyGithubMetrics() throws IOException {
+        MyGithub my = new MyGithub("fake_token");
+        my.setGraphQL(dataSource());
+
+        assertEquals(3.5, my.getAverageOpenIssues(), 0.01);
+        assertEquals(3.0, my.getAverageCollaborators(), 0.01);
+        assertEquals(3.0, my.getAveragePullRequestDuration(), 0.01);
+        // All three metrics share the same queries.
+        assertEquals(2, requests.size());
+    }
+}
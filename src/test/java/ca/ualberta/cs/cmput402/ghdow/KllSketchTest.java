@@ -0,0 +1,45 @@
+package ca.ualberta.cs.cmput402.ghdow;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class KllSketchTest {
+
+    @Test
+    void testQuantilesWithinRankError() {
+        int n = 100000;
+        KllSketch sketch = new KllSketch(200, new Random(1));
+        Random random = new Random(2);
+        double[] values = new double[n];
+        for (int i = 0; i < n; i++) {
+            values[i] = random.nextGaussian();
+            sketch.add(values[i]);
+        }
+        Arrays.sort(values);
+
+        assertEquals(n, sketch.getCount());
+        assertTrue(sketch.getRetainedCount() <= 3 * 200);
+        for (double fraction : new double[] {0.1, 0.5, 0.9, 0.99}) {
+            int rank = Arrays.binarySearch(values, sketch.getQuantile(fraction));
+            assertEquals(fraction, rank / (double) n, 2 * sketch.getNormalizedRankError());
+        }
+    }
+
+    @Test
+    void testSampledDistribution() {
+        SampledDistribution distribution = new SampledDistribution(new KllSketch(200, new Random(1)));
+        for (int i = 1; i <= 5; i++) {
+            distribution.add(i);
+        }
+        // Small enough that nothing has been compacted, so the quantiles are exact
+        assertEquals(3.0, distribution.getMean(), 1e-9);
+        assertEquals(3.0, distribution.getMedian());
+        assertEquals(5.0, distribution.getQuantile(0.9));
+        // Sample standard deviation is sqrt(2.5)
+        assertEquals(1.96 * Math.sqrt(2.5 / 5), distribution.getMeanError(), 1e-9);
+    }
+}
@@ -0,0 +1,53 @@
+package ca.ualberta.cs.cmput402.ghdow;
+
+import org.kohsuke.github.extras.HttpClientGitHubConnector;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+
+// End-to-end report times against FakeGitHub, for every combination of
+// repository and commit counts, e.g.
+//   ./gradlew loadTest --args='--repos=1,10,100 --commits=100,10000 --latency=50 --concurrency=4'
+// Other options: --users, --prs, --collaborators, --page-size, --rate-limit
+// (requests per minute), --error-rate and --metrics (as for Main).
+public class LoadTest {
+
+    public static void main(String[] args) throws IOException {
+        Map<String, String> options = Main.getOptions(args);
+        Set<Metric> metrics = options.containsKey("metrics")
+                ? Metric.parse(options.get("metrics")) : Main.DEFAULT_METRICS;
+        int concurrency = Integer.parseInt(options.getOrDefault("concurrency", "1"));
+
+        System.out.printf("%8s %10s %10s %10s %10s%n", "repos", "commits", "requests", "retries", "millis");
+        for (String repos : options.getOrDefault("repos", "1,10,50").split(",")) {
+            for (String commits : options.getOrDefault("commits", "100,1000,10000").split(",")) {
+                // Enough handler threads that the fake never queues our requests
+                FakeGitHub fake = new FakeGitHub(Math.max(16, concurrency * 2));
+                fake.setRepos(Integer.parseInt(repos));
+                fake.setCommitsPerRepo(Integer.parseInt(commits));
+                fake.setUsers(Integer.parseInt(options.getOrDefault("users", "1")));
+                fake.setPullRequestsPerRepo(Integer.parseInt(options.getOrDefault("prs", "100")));
+                fake.setCollaboratorsPerRepo(Integer.parseInt(options.getOrDefault("collaborators", "3")));
+                fake.setLatencyMillis(Long.parseLong(options.getOrDefault("latency", "20")));
+                fake.setMaxPageSize(Integer.parseInt(options.getOrDefault("page-size", "100")));
+                fake.setRateLimit(Integer.parseInt(options.getOrDefault("rate-limit", "5000")), 60 * 1000);
+                fake.setErrorRate(Double.parseDouble(options.getOrDefault("error-rate", "0")));
+                fake.start();
+                try {
+                    RequestMetrics requestMetrics = new RequestMetrics();
+                    MyGithub my = new MyGithub("user0", fake.getEndpoint(), new HttpClientGitHubConnector(),
+                            new RequestScheduler(), requestMetrics);
+                    my.setFetchConcurrency(concurrency);
+                    long start = System.nanoTime();
+                    my.query(metrics);
+                    long millis = (System.nanoTime() - start) / 1_000_000;
+                    System.out.printf("%8s %10s %10d %10d %10d%n", repos, commits,
+                            fake.getRequestCount(), requestMetrics.getRetryCount(), millis);
+                } finally {
+                    fake.stop();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package ca.ualberta.cs.cmput402.ghdow;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class MetricsServerTest {
+
+    private MetricsServer server;
+    private MyGithub my;
+    private final HttpClient http = HttpClient.newHttpClient();
+
+    @BeforeEach
+    void setUp() throws IOException {
+        my = mock(MyGithub.class);
+        when(my.query(any())).thenReturn(Map.of(Metric.MOST_POPULAR_DAY, "Friday"));
+        server = new MetricsServer(new InetSocketAddress("localhost", 0), 2);
+        server.addUser("testuser", my);
+        server.start(60 * 60 * 1000);
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop();
+    }
+
+    private HttpResponse<String> get(String path) throws IOException, InterruptedException {
+        URI uri = URI.create("http://localhost:" + server.getPort() + path);
+        return http.send(HttpRequest.newBuilder(uri).build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    @Test
+    void testServesWarmMetrics() throws IOException, InterruptedException {
+        HttpResponse<String> first = get("/users/testuser/metrics?metrics=day");
+        HttpResponse<String> second = get("/users/testuser/metrics?metrics=day");
+
+        assertEquals(200, first.statusCode());
+        assertTrue(first.body().contains("\"day\":\"Friday\""));
+        assertEquals(first.body(), second.body());
+        // The second request was answered from memory
+        verify(my, times(1)).query(EnumSet.of(Metric.MOST_POPULAR_DAY));
+
+        // The refresher reloads what's been asked for
+        server.refreshAll();
+        verify(my).refresh();
+        verify(my, times(2)).query(EnumSet.of(Metric.MOST_POPULAR_DAY));
+    }
+
+    @Test
+    void testAnswersDuringRefresh() throws Exception {
+        assertTrue(get("/users/testuser/metrics?metrics=day").body().contains("\"day\":\"Friday\""));
+
+        // A refresh that takes until we let it finish, and then finds new values
+        CountDownLatch refreshing = new CountDownLatch(1);
+        CountDownLatch finish = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            refreshing.countDown();
+            finish.await();
+            return null;
+        }).when(my).refresh();
+        when(my.query(any())).thenReturn(Map.of(Metric.MOST_POPULAR_DAY, "Monday"));
+        Thread refresher = new Thread(server::refreshAll);
+        refresher.start();
+        assertTrue(refreshing.await(5, TimeUnit.SECONDS));
+
+        // Meanwhile the old values are served without waiting for it
+        HttpResponse<String> during = get("/users/testuser/metrics?metrics=day");
+        assertEquals(200, during.statusCode());
+        assertTrue(during.body().contains("\"day\":\"Friday\""));
+        assertTrue(refresher.isAlive());
+
+        finish.countDown();
+        refresher.join(5000);
+        assertTrue(get("/users/testuser/metrics?metrics=day").body().contains("\"day\":\"Monday\""));
+    }
+
+    @Test
+    void testMissingMetricWaitsForRefresh() throws Exception {
+        MetricsServer.User user = new MetricsServer.User(my);
+        user.get(EnumSet.of(Metric.MOST_POPULAR_DAY));
+
+        CountDownLatch refreshing = new CountDownLatch(1);
+        CountDownLatch finish = new CountDownLatch(1);
+        AtomicBoolean inRefresh = new AtomicBoolean();
+        AtomicBoolean overlapped = new AtomicBoolean();
+        doAnswer(invocation -> {
+            inRefresh.set(true);
+            refreshing.countDown();
+            finish.await();
+            inRefresh.set(false);
+            return null;
+        }).when(my).refresh();
+        when(my.query(any())).thenAnswer(invocation -> {
+            if (inRefresh.get()) overlapped.set(true);
+            Map<Metric, Object> values = new EnumMap<>(Metric.class);
+            for (Metric metric : invocation.<Set<Metric>>getArgument(0)) {
+                values.put(metric, metric.getCliName());
+            }
+            return values;
+        });
+        Thread refresher = new Thread(() -> {
+            try {
+                user.refresh();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        refresher.start();
+        assertTrue(refreshing.await(5, TimeUnit.SECONDS));
+
+        // A metric we don't have yet needs MyGithub, so it waits for the refresh
+        Thread request = new Thread(() -> {
+            try {
+                user.get(EnumSet.of(Metric.AVERAGE_OPEN_ISSUES));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        request.start();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (request.getState() != Thread.State.BLOCKED && request.getState() != Thread.State.TERMINATED
+                && System.nanoTime() < deadline) {
+            Thread.onSpinWait();
+        }
+        assertEquals(Thread.State.BLOCKED, request.getState());
+
+        finish.countDown();
+        refresher.join(5000);
+        request.join(5000);
+        assertFalse(overlapped.get());
+        assertEquals("day", user.snapshot.values.get(Metric.MOST_POPULAR_DAY));
+        assertEquals("open-issues", user.snapshot.values.get(Metric.AVERAGE_OPEN_ISSUES));
+    }
+
+    @Test
+    void testErrors() throws IOException, InterruptedException {
+        assertEquals(404, get("/users/nobody/metrics").statusCode());
+        assertEquals(404, get("/users/testuser").statusCode());
+        HttpResponse<String> badMetric = get("/users/testuser/metrics?metrics=days");
+        assertEquals(400, badMetric.statusCode());
+        assertTrue(badMetric.body().contains("Unknown metric days"));
+    }
+}
@@ -0,0 +1,42 @@
+package ca.ualberta.cs.cmput402.ghdow;
+
+import org.kohsuke.github.PagedIterable;
+import org.kohsuke.github.PagedIterator;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.mockito.Mockito.*;
+
+// Stands in for github-api's paged lists in the tests and the benchmarks
+final class MockPages {
+    private MockPages() {
+    }
+
+    // Serves the items like github-api would, one at a time, every time it's iterated
+    static <T> PagedIterable<T> paged(List<T> items) {
+        return paged(items, 100);
+    }
+
+    // nextPage() hands out up to `pageSize` items at a time
+    @SuppressWarnings("unchecked")
+    static <T> PagedIterable<T> paged(List<T> items, int pageSize) {
+        PagedIterable<T> iterable = mock(PagedIterable.class, RETURNS_SELF);
+        doAnswer(invocation -> {
+            Iterator<T> iterator = items.iterator();
+            PagedIterator<T> page = mock(PagedIterator.class);
+            when(page.hasNext()).thenAnswer(i -> iterator.hasNext());
+            when(page.next()).thenAnswer(i -> iterator.next());
+            when(page.nextPage()).thenAnswer(i -> {
+                List<T> next = new ArrayList<>();
+                while (next.size() < pageSize && iterator.hasNext()) {
+                    next.add(iterator.next());
+                }
+                return next;
+            });
+            return page;
+        }).when(iterable).iterator();
+        return iterable;
+    }
+}
@@ -0,0 +1,31 @@
+package ca.ualberta.cs.cmput402.ghdow;
+
+import org.kohsuke.github.GHPullRequest;
+
+import java.util.Date;
+
+import static org.mockito.Mockito.*;
+
+// Stands in for github-api's pull requests in the tests and the benchmarks
+final class MockPullRequests {
+    private MockPullRequests() {
+    }
+
+    // Last updated when it was closed, as GitHub does. Answers by method name
+    // rather than when(pr.getCreatedAt()), which trips over github-api's
+    // bridge methods (see MyGithubTest.getIssueCreateDates).
+    static GHPullRequest closed(long createdAt, long closedAt) {
+        return mock(GHPullRequest.class, invocation -> {
+            if (invocation.getMethod().getReturnType() == Date.class) {
+                switch (invocation.getMethod().getName()) {
+                    case "getCreatedAt":
+                        return new Date(createdAt);
+                    case "getClosedAt":
+                    case "getUpdatedAt":
+                        return new Date(closedAt);
+                }
+            }
+            return RETURNS_DEFAULTS.answer(invocation);
+        });
+    }
+}
@@ -9,6 +9,9 @@ import org.mockito.MockedConstruction;
 import org.mockito.junit.MockitoJUnitRunner;
 
 import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
 import java.util.*;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -52,16 +55,11 @@ import static org.mockito.Mockito.*;
         when(mockRepo1.getName()).thenReturn("repo1");
         when(mockRepo2.getName()).thenReturn("repo2");
 
-        // For getAverageCollaborators(), getCollaborators() returns a GHPersonSet.
-        @SuppressWarnings("unchecked")
-        GHPersonSet<GHUser> mockCollaborators1 = mock(GHPersonSet.class);
-        when(mockCollaborators1.size()).thenReturn(2);
-        when(mockRepo1.getCollaborators()).thenReturn(mockCollaborators1);
-
-        @SuppressWarnings("unchecked")
-        GHPersonSet<GHUser> mockCollaborators2 = mock(GHPersonSet.class);
-        when(mockCollaborators2.size()).thenReturn(3);
-        when(mockRepo2.getCollaborators()).thenReturn(mockCollaborators2);
+        // For getAverageCollaborators(), only the logins are asked for.
+        when(mockRepo1.getFullName()).thenReturn("testuser/repo1");
+        when(mockRepo2.getFullName()).thenReturn("testuser/repo2");
+        when(mockRepo1.getCollaboratorNames()).thenReturn(Set.of("testuser", "alice"));
+        when(mockRepo2.getCollaboratorNames()).thenReturn(Set.of("testuser", "bob", "carol"));
     }
 
     @Test
@@ -84,7 +82,7 @@ import static org.mockito.Mockito.*;
         when(commitMonday.getCommitDate()).thenReturn(mondayDate);
 
         List<GHCommit> fakeCommits = Arrays.asList(commitFriday1, commitFriday2, commitMonday);
-        doReturn(fakeCommits).when(spyGithub).getCommits();
+        doReturn(CommitTimes.of(fakeCommits)).when(spyGithub).getCommitTimes();
 
         // Expect "Friday" because there are 2 commits on Friday.
         assertEquals("Friday", spyGithub.getMostPopularDay());
@@ -110,7 +108,7 @@ import static org.mockito.Mockito.*;
         when(commitApril.getCommitDate()).thenReturn(aprilDate);
 
         List<GHCommit> fakeCommits = Arrays.asList(commitMarch, commitMarch2, commitApril);
-        doReturn(fakeCommits).when(spyGithub).getCommits();
+        doReturn(CommitTimes.of(fakeCommits)).when(spyGithub).getCommitTimes();
 
         // Expect "March" because it has 2 commits.
         assertEquals("March", spyGithub.getMostPopularMonth());
@@ -139,12 +137,61 @@ import static org.mockito.Mockito.*;
         when(commit3.getCommitDate()).thenReturn(date3);
 
         List<GHCommit> fakeCommits = Arrays.asList(commit1, commit2, commit3);
-        doReturn(fakeCommits).when(spyGithub).getCommits();
+        doReturn(CommitTimes.of(fakeCommits)).when(spyGithub).getCommitTimes();
 
         // Intervals: 1 day and 2 days. Average = (1 + 2) / 2 = 1.5 days.
         assertEquals(1.5, spyGithub.getAverageTimeBetweenCommits(), 0.01);
     }
 
+    @Test
+    void testGetCommitStats() throws IOException {
+        GHCommit commit1 = mock(GHCommit.class);
+        GHCommit commit2 = mock(GHCommit.class);
+        GHCommit commit3 = mock(GHCommit.class);
+
+        Calendar cal = Calendar.getInstance();
+        // Tuesday, April 2, 2024 and then two commits on Friday, April 5, 2024.
+        cal.set(2024, Calendar.APRIL, 2, 10, 0, 0);
+        Date tuesdayDate = cal.getTime();
+        cal.set(2024, Calendar.APRIL, 5, 10, 0, 0);
+        Date fridayDate = cal.getTime();
+
+        when(commit1.getCommitDate()).thenReturn(fridayDate);
+        when(commit2.getCommitDate()).thenReturn(tuesdayDate);
+        when(commit3.getCommitDate()).thenReturn(fridayDate);
+
+        List<GHCommit> fakeCommits = Arrays.asList(commit1, commit2, commit3);
+        doReturn(CommitTimes.of(fakeCommits)).when(spyGithub).getCommitTimes();
+
+        CommitStats stats = spyGithub.getCommitStats();
+        assertEquals(3, stats.getCommitCount());
+        assertEquals("Friday", stats.getMostPopularDay());
+        assertEquals("April", stats.getMostPopularMonth());
+        // Intervals: 3 days and 0 days. Average = 1.5 days.
+        assertEquals(1.5, stats.getAverageTimeBetweenCommits(), 0.01);
+
+        // The other metrics reuse the same pass over the commits.
+        assertEquals("Friday", spyGithub.getMostPopularDay());
+        assertEquals("April", spyGithub.getMostPopularMonth());
+        verify(spyGithub, times(1)).getCommitTimes();
+    }
+
+    @Test
+    void testGetMostPopularDayInZone() throws IOException {
+        // 03:00 UTC on Friday, March 15, 2024 is still Thursday evening in Edmonton.
+        CommitTimes times = new CommitTimes();
+        times.add(Instant.parse("2024-03-15T03:00:00Z").toEpochMilli(), times.repoId("repo1"));
+        doReturn(times).when(spyGithub).getCommitTimes();
+
+        spyGithub.setZone(ZoneId.of("UTC"));
+        assertEquals("Friday", spyGithub.getMostPopularDay());
+        assertEquals(3, spyGithub.getCommitStats().getMostPopularHour());
+
+        spyGithub.setZone(ZoneId.of("America/Edmonton"));
+        assertEquals("Thursday", spyGithub.getMostPopularDay());
+        assertEquals(21, spyGithub.getCommitStats().getMostPopularHour());
+    }
+
     @Test
     void testGetAverageOpenIssues() throws IOException {
         // Set repository to report 10 open issues.
@@ -162,9 +209,209 @@ import static org.mockito.Mockito.*;
         // getAverageCollaborators() iterates over our two repositories.
         double avgCollaborators = spyGithub.getAverageCollaborators();
         assertEquals(2.5, avgCollaborators, 0.01);
+
+        // Counted concurrently and kept, so asking again doesn't load them again
+        spyGithub.setFetchConcurrency(2);
+        assertEquals(2.5, spyGithub.getAverageCollaborators(), 0.01);
+        assertEquals(4, spyGithub.getDistinctCollaborators());
+        verify(mockRepo1, times(1)).getCollaboratorNames();
+    }
+
+    @Test
+    void testGetCommitTimesConcurrently() throws IOException {
+        // Each repository has its own commits, fetched on separate threads.
+        doReturn(new long[] {3000L, 1000L}).when(spyGithub).fetchCommitTimes(mockRepo1);
+        doReturn(new long[] {2000L}).when(spyGithub).fetchCommitTimes(mockRepo2);
+
+        spyGithub.setFetchConcurrency(2);
+        CommitTimes times = spyGithub.getCommitTimes();
+
+        // All commits from both repositories are merged into one store.
+        assertEquals(3, times.size());
+        assertEquals(2, times.getRepoCount());
+        // Each commit still knows which repository it came from.
+        Map<Long, String> repoOf = new HashMap<>();
+        for (int i = 0; i < times.size(); i++) {
+            repoOf.put(times.getTime(i), times.getRepoName(times.getRepoId(i)));
+        }
+        assertEquals(Map.of(1000L, "repo1", 2000L, "repo2", 3000L, "repo1"), repoOf);
+    }
+
+    @Test
+    void testFailedReposAreTriedAgain() throws IOException {
+        spyGithub.scheduler = new RequestScheduler(1, 10);
+        doReturn(new long[] {3000L}).when(spyGithub).fetchCommitTimes(mockRepo1);
+        // repo2 fails every round of the first load
+        IOException reset = new IOException("Connection reset");
+        doThrow(reset).doThrow(reset).doThrow(reset).doReturn(new long[] {2000L})
+                .when(spyGithub).fetchCommitTimes(mockRepo2);
+
+        assertEquals(1, spyGithub.getCommitStats().getCommitCount());
+        assertEquals(List.of("repo2"), spyGithub.getFailedRepos());
+
+        // The partial load wasn't kept, so the next call loads repo2 after all
+        assertEquals(2, spyGithub.getCommitStats().getCommitCount());
+        assertTrue(spyGithub.getFailedRepos().isEmpty());
+        assertEquals(2, spyGithub.getCommitStats().getCommitCount());
+        verify(spyGithub, times(4)).fetchCommitTimes(mockRepo2);
+    }
+
+    @Test
+    void testIdentityIsResolvedOnce() throws IOException {
+        doReturn(new long[0]).when(spyGithub).fetchCommitTimes(any());
+
+        assertEquals("testuser", spyGithub.getGithubName());
+        spyGithub.getCommitTimes();
+        assertEquals("testuser", spyGithub.getGithubName());
+
+        // The login is looked up once, not once per call or per repository.
+        verify(mockMyself, times(1)).getLogin();
+        verify(mockGitHub, never()).getMyself();
+    }
+
+    @Test
+    void testIdentityExpires() throws IOException {
+        spyGithub.setIdentityTtl(0);
+        spyGithub.getGithubName();
+        spyGithub.getGithubName();
+
+        // The second lookup found the identity expired and asked GitHub again.
+        verify(mockGitHub, times(1)).getMyself();
+    }
+
+    @Test
+    void testIdentityEmails() throws IOException {
+        GHEmail email = mock(GHEmail.class);
+        when(email.getEmail()).thenReturn("Test@Example.com");
+        when(mockMyself.getEmails2()).thenReturn(List.of(email));
+        when(mockMyself.getId()).thenReturn(42L);
+
+        Identity identity = spyGithub.getIdentity();
+        assertEquals(42L, identity.getId());
+        assertEquals("testuser", identity.getLogin());
+        // Nothing needed the emails yet, so they weren't asked for
+        verify(mockMyself, never()).getEmails2();
+        assertTrue(identity.hasEmail("TEST@example.com"));
+        assertEquals(Set.of("test@example.com",
+                        "42+testuser@users.noreply.github.com",
+                        "testuser@users.noreply.github.com"),
+                identity.getEmails());
+        verify(mockMyself, times(1)).getEmails2();
+    }
+
+    @Test
+    void testQuery() throws IOException {
+        GHCommit commit = mock(GHCommit.class);
+        when(commit.getCommitDate()).thenReturn(Date.from(Instant.parse("2024-04-05T10:00:00Z")));
+        doReturn(CommitTimes.of(List.of(commit))).when(spyGithub).getCommitTimes();
+        spyGithub.setZone(ZoneId.of("UTC"));
+
+        // Commit metrics don't touch collaborators (or pull requests)
+        Map<Metric, Object> commitsOnly = spyGithub.query(EnumSet.of(Metric.MOST_POPULAR_DAY, Metric.MOST_POPULAR_HOUR));
+        assertEquals(Map.of(Metric.MOST_POPULAR_DAY, "Friday", Metric.MOST_POPULAR_HOUR, 10), commitsOnly);
+        verify(mockRepo1, never()).getCollaboratorNames();
+        verify(mockRepo1, never()).queryPullRequests();
+
+        // Independent sources both come back, loaded once
+        Map<Metric, Object> both = spyGithub.query(EnumSet.of(Metric.MOST_POPULAR_DAY, Metric.AVERAGE_COLLABORATORS));
+        assertEquals("Friday", both.get(Metric.MOST_POPULAR_DAY));
+        assertEquals(2.5, both.get(Metric.AVERAGE_COLLABORATORS));
+        verify(mockRepo1, times(1)).getCollaboratorNames();
+        verify(spyGithub, times(1)).getCommitTimes();
+    }
+
+    @Test
+    void testParseMetrics() {
+        assertEquals(EnumSet.of(Metric.MOST_POPULAR_DAY, Metric.AVERAGE_PULL_REQUEST_DURATION),
+                Metric.parse("pr-duration, day"));
+        assertThrows(IllegalArgumentException.class, () -> Metric.parse("days"));
+    }
+
+    @Test
+    void testPullRequestWindow() throws IOException {
+        long day = 24L * 60 * 60 * 1000;
+        long now = System.currentTimeMillis();
+        GHPullRequest recent = MockPullRequests.closed(now - 3 * day, now - day);
+        GHPullRequest old = MockPullRequests.closed(now - 200 * day, now - 100 * day);
+        GHPullRequest alsoRecent = MockPullRequests.closed(now - 3 * day, now - day);
+        GHPullRequestQueryBuilder query = mock(GHPullRequestQueryBuilder.class, RETURNS_SELF);
+        when(query.list()).thenReturn(MockPages.paged(List.of(recent, old, alsoRecent)));
+        when(mockRepo1.queryPullRequests()).thenReturn(query);
+        spyGithub.myRepos.remove("repo2");
+
+        spyGithub.setPullRequestWindow(Duration.ofDays(90));
+        assertEquals(2.0, spyGithub.getAveragePullRequestDuration(), 0.001);
+        // Asked for most recently updated first, and stopped at the first one past the window
+        verify(query).sort(GHPullRequestQueryBuilder.Sort.UPDATED);
+        verify(query).direction(GHDirection.DESC);
+        verifyNoInteractions(alsoRecent);
+    }
+
+    @Test
+    void testGetApproximateMetrics() throws IOException {
+        long day = 24L * 60 * 60 * 1000;
+        long now = System.currentTimeMillis();
+        // 250 commits a day apart, newest first
+        List<GHCommit> commits = new ArrayList<>();
+        for (int i = 0; i < 250; i++) {
+            GHCommit commit = mock(GHCommit.class);
+            when(commit.getCommitDate()).thenReturn(new Date(now - i * day));
+            commits.add(commit);
+        }
+        GHCommitQueryBuilder commitQuery = mock(GHCommitQueryBuilder.class, RETURNS_SELF);
+        when(commitQuery.list()).thenReturn(MockPages.paged(commits));
+        when(mockRepo1.queryCommits()).thenReturn(commitQuery);
+        GHPullRequest recent = MockPullRequests.closed(now - 3 * day, now - day);
+        GHPullRequest old = MockPullRequests.closed(now - 200 * day, now - 100 * day);
+        GHPullRequest alsoRecent = MockPullRequests.closed(now - 3 * day, now - day);
+        GHPullRequestQueryBuilder prQuery = mock(GHPullRequestQueryBuilder.class, RETURNS_SELF);
+        when(prQuery.list()).thenReturn(MockPages.paged(List.of(recent, old, alsoRecent), 2));
+        when(mockRepo1.queryPullRequests()).thenReturn(prQuery);
+
+        // repo2 is empty: listing its commits fails, and it has no pull requests
+        GHCommitQueryBuilder emptyQuery = mock(GHCommitQueryBuilder.class, RETURNS_SELF);
+        when(emptyQuery.list()).thenThrow(new GHException("Failed to retrieve",
+                new IOException("{\"message\":\"Git Repository is empty.\"}")));
+        when(mockRepo2.queryCommits()).thenReturn(emptyQuery);
+        GHPullRequestQueryBuilder noPrs = mock(GHPullRequestQueryBuilder.class, RETURNS_SELF);
+        when(noPrs.list()).thenReturn(MockPages.paged(List.of()));
+        when(mockRepo2.queryPullRequests()).thenReturn(noPrs);
+
+        spyGithub.setPullRequestWindow(Duration.ofDays(90));
+        ApproximateMetrics metrics = spyGithub.getApproximateMetrics(2);
+        // Only the first two pages of commits: 200 commits, 199 gaps of a day
+        assertEquals(199, metrics.getCommitGaps().getCount());
+        assertEquals(1.0, metrics.getCommitGaps().getMean(), 0.001);
+        verify(commitQuery).author("testuser");
+        verifyNoInteractions(commits.get(200));
+        // The first page of pull requests reaches past the window, so it's the only one
+        assertEquals(1, metrics.getPullRequestDurations().getCount());
+        assertEquals(2.0, metrics.getPullRequestDurations().getMean(), 0.001);
+        verifyNoInteractions(alsoRecent);
+        // Two commit pages and one pull request page, none for repo2
+        assertEquals(3, metrics.getPagesFetched());
+    }
+
+    @Test
+    void testGetClosedIssueCreateTimes() throws IOException {
+        List<GHIssue> issues = new ArrayList<>();
+        for (long created : new long[] {10000L, 8000L, 5000L, 2000L, 1000L}) {
+            issues.add(mock(GHIssue.class, invocation -> invocation.getMethod().getName().equals("getCreatedAt")
+                    ? new Date(created) : RETURNS_DEFAULTS.answer(invocation)));
+        }
+        PagedIterable<GHIssue> list = MockPages.paged(issues);
+        when(mockRepo1.listIssues(GHIssueState.CLOSED)).thenReturn(list);
+        spyGithub.myRepos.remove("repo2");
+
+        spyGithub.setIssuePageSize(50);
+        assertArrayEquals(new long[] {8000L, 5000L}, spyGithub.getClosedIssueCreateTimes(4000L, 9000L));
+        verify(list).withPageSize(50);
+        // Stopped at the first issue created before `since`
+        verifyNoInteractions(issues.get(4));
     }
 
     @Test
+    @SuppressWarnings("deprecation")
     void getIssueCreateDates() throws IOException {
         // We don't have a login token for github :(
         String token = "I am a fake token";
@@ -287,6 +534,8 @@ import static org.mockito.Mockito.*;
         mockMyself = mock(GHMyself.class);
         spyGithub.gitHub = mockGitHub;
         spyGithub.myself = mockMyself;
+        // Back off for milliseconds rather than seconds between attempts
+        spyGithub.scheduler = new RequestScheduler(1, 10);
         when(mockGitHub.getMyself()).thenReturn(mockMyself);
         when(mockMyself.getLogin()).thenReturn("testuser");
 
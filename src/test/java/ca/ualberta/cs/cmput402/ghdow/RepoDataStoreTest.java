@@ -0,0 +1,109 @@
+package ca.ualberta.cs.cmput402.ghdow;
+
+import org.junit.jupiter.api.Test;
+import org.kohsuke.github.*;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class RepoDataStoreTest {
+
+    // `login` is who GitHub linked the email to, or null for nobody
+    private static GHCommit commit(String login, String email, long time) throws IOException {
+        GHCommit commit = mock(GHCommit.class);
+        if (login != null) {
+            GHUser user = mock(GHUser.class);
+            when(user.getLogin()).thenReturn(login);
+            when(commit.getAuthor()).thenReturn(user);
+        }
+        GHCommit.ShortInfo info = mock(GHCommit.ShortInfo.class);
+        GitUser author = mock(GitUser.class);
+        when(author.getEmail()).thenReturn(email);
+        when(info.getAuthor()).thenReturn(author);
+        when(commit.getCommitShortInfo()).thenReturn(info);
+        when(commit.getCommitDate()).thenReturn(new Date(time));
+        return commit;
+    }
+
+    private static MyGithub user(String login, GHRepository repo, RepoDataStore store) throws IOException {
+        MyGithub my = new MyGithub("fake_token");
+        GHMyself myself = mock(GHMyself.class);
+        when(myself.getLogin()).thenReturn(login);
+        my.myself = myself;
+        my.myRepos = new HashMap<>();
+        my.myRepos.put(repo.getName(), repo);
+        my.setRepoDataStore(store);
+        return my;
+    }
+
+    @Test
+    void testSharedRepoIsLoadedOnce() throws IOException {
+        GHRepository repo = mock(GHRepository.class);
+        when(repo.getName()).thenReturn("shared");
+        when(repo.getFullName()).thenReturn("org/shared");
+        when(repo.getOpenIssueCount()).thenReturn(4);
+        // Alice's token can't read her emails, so her work email only matches by login
+        List<GHCommit> commits = List.of(
+                commit(null, "alice@users.noreply.github.com", 1000L),
+                commit(null, "Alice@users.noreply.github.com", 2000L),
+                commit(null, "bob@users.noreply.github.com", 3000L),
+                commit("Alice", "alice@work.example.com", 4000L),
+                commit(null, "stranger@example.com", 5000L));
+        when(repo.listCommits()).thenReturn(MockPages.paged(commits));
+        GHPullRequestQueryBuilder prQuery = mock(GHPullRequestQueryBuilder.class, RETURNS_SELF);
+        when(prQuery.list()).thenReturn(MockPages.paged(List.of()));
+        when(repo.queryPullRequests()).thenReturn(prQuery);
+        when(repo.getCollaboratorNames()).thenReturn(Set.of("alice", "bob"));
+
+        RepoDataStore store = new RepoDataStore();
+        MyGithub alice = user("alice", repo, store);
+        MyGithub bob = user("bob", repo, store);
+
+        // Each user only sees their own commits, from the one load
+        assertEquals(3, alice.getCommitStats().getCommitCount());
+        assertEquals(1, bob.getCommitStats().getCommitCount());
+        assertEquals(2.0, bob.getAverageCollaborators());
+        assertEquals(4.0, alice.getAverageOpenIssues());
+        verify(repo, times(1)).listCommits();
+        verify(repo, times(1)).getCollaboratorNames();
+        verify(repo, never()).queryCommits();
+        assertEquals(1, store.size());
+    }
+
+    @Test
+    void testPullRequestWindow() throws IOException {
+        long day = 24L * 60 * 60 * 1000;
+        long now = System.currentTimeMillis();
+        GHRepository repo = mock(GHRepository.class);
+        when(repo.getName()).thenReturn("shared");
+        when(repo.getFullName()).thenReturn("org/shared");
+        when(repo.listCommits()).thenReturn(MockPages.paged(List.of()));
+        GHPullRequest recent = MockPullRequests.closed(now - 3 * day, now - day);
+        GHPullRequest old = MockPullRequests.closed(now - 200 * day, now - 100 * day);
+        GHPullRequest alsoOld = MockPullRequests.closed(now - 300 * day, now - 200 * day);
+        GHPullRequestQueryBuilder prQuery = mock(GHPullRequestQueryBuilder.class, RETURNS_SELF);
+        when(prQuery.list()).thenReturn(MockPages.paged(List.of(recent, old, alsoOld)));
+        when(repo.queryPullRequests()).thenReturn(prQuery);
+
+        RepoData data = new RepoDataStore(Duration.ofDays(90)).get(repo);
+        assertEquals(1, data.getPullRequestCount());
+        // Stopped at the first one past the window
+        verifyNoInteractions(alsoOld);
+    }
+
+    @Test
+    void testOpenIssuesDontLoadRepos() throws IOException {
+        GHRepository repo = mock(GHRepository.class);
+        when(repo.getName()).thenReturn("shared");
+        when(repo.getOpenIssueCount()).thenReturn(4);
+        RepoDataStore store = new RepoDataStore();
+
+        assertEquals(4.0, user("alice", repo, store).getAverageOpenIssues());
+        assertEquals(0, store.size());
+        verify(repo, never()).listCommits();
+    }
+}
@@ -0,0 +1,76 @@
+package ca.ualberta.cs.cmput402.ghdow;
+
+import org.junit.jupiter.api.Test;
+import org.kohsuke.github.connector.GitHubConnectorRequest;
+import org.kohsuke.github.connector.GitHubConnectorResponse;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class RequestMetricsTest {
+
+    @Test
+    void testEndpoint() throws IOException {
+        assertEquals("GET /repos/{owner}/{repo}/commits",
+                RequestMetrics.endpoint("GET", new URL("https://api.github.com/repos/octo/hello/commits?page=3")));
+        assertEquals("GET /repos/{owner}/{repo}/pulls/{n}",
+                RequestMetrics.endpoint("GET", new URL("https://api.github.com/repos/octo/hello/pulls/42")));
+        assertEquals("GET /repos/{owner}/{repo}/commits/{sha}", RequestMetrics.endpoint("GET",
+                new URL("https://api.github.com/repos/octo/hello/commits/0123456789abcdef0123456789abcdef01234567")));
+        assertEquals("GET /users/{user}", RequestMetrics.endpoint("GET", new URL("https://api.github.com/users/octo")));
+        assertEquals("GET /user", RequestMetrics.endpoint("GET", new URL("https://api.github.com/user")));
+    }
+
+    @Test
+    void testRateLimitHeader() {
+        RequestMetrics metrics = new RequestMetrics();
+        metrics.recordRateLimitRemaining((String) null);
+        metrics.recordRateLimitRemaining("soon");
+        assertEquals(-1, metrics.getRateLimitRemaining());
+        metrics.recordRateLimitRemaining(" 42 ");
+        assertEquals(42, metrics.getRateLimitRemaining());
+    }
+
+    @Test
+    void testLatencyPercentiles() {
+        RequestMetrics metrics = new RequestMetrics();
+        for (int i = 0; i < 99; i++) {
+            metrics.recordRequest("GET /user", 3_000_000L, false);
+        }
+        metrics.recordRequest("GET /user", 900_000_000L, true);
+        // 3ms lands in [2, 4), the one slow request only shows past p99
+        assertEquals(4L, (long) metrics.getP95LatencyMillis().get("GET /user"));
+        assertEquals(1, metrics.getErrorCount());
+        assertEquals(11.97, metrics.getMeanLatencyMillis().get("GET /user"), 0.001);
+    }
+
+    @Test
+    void testInstrumentedConnector() throws IOException {
+        GitHubConnectorRequest request = mock(GitHubConnectorRequest.class);
+        when(request.method()).thenReturn("GET");
+        when(request.url()).thenReturn(new URL("https://api.github.com/repos/octo/hello/commits"));
+        GitHubConnectorResponse response = mock(GitHubConnectorResponse.class);
+        when(response.request()).thenReturn(request);
+        when(response.statusCode()).thenReturn(200);
+        when(response.allHeaders()).thenReturn(Map.of("X-RateLimit-Remaining", List.of("4321")));
+        when(response.header("X-RateLimit-Remaining")).thenReturn("4321");
+        when(response.bodyStream()).thenReturn(new ByteArrayInputStream(new byte[1000]));
+
+        RequestMetrics metrics = new RequestMetrics();
+        InstrumentedConnector connector = new InstrumentedConnector(r -> response, metrics);
+        try (InputStream body = connector.send(request).bodyStream()) {
+            assertEquals(1000, body.readAllBytes().length);
+        }
+        assertEquals(Map.of("GET /repos/{owner}/{repo}/commits", 1L), metrics.getRequestsByEndpoint());
+        assertEquals(1000, metrics.getBytesReceived());
+        assertEquals(4321, metrics.getRateLimitRemaining());
+        assertTrue(metrics.getSummary().contains("GET /repos/{owner}/{repo}/commits"));
+    }
+}
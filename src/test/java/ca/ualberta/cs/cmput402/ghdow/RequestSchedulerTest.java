@@ -0,0 +1,130 @@
+package ca.ualberta.cs.cmput402.ghdow;
+
+import org.junit.jupiter.api.Test;
+import org.kohsuke.github.connector.GitHubConnector;
+import org.kohsuke.github.connector.GitHubConnectorRequest;
+
+import java.io.IOException;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class RequestSchedulerTest {
+
+    private final RequestScheduler scheduler = new RequestScheduler(10, 100);
+
+    private static Map<String, List<String>> rateLimit(int remaining, long resetAtMillis) {
+        return Map.of(
+                "X-RateLimit-Limit", List.of("5000"),
+                "X-RateLimit-Remaining", List.of(String.valueOf(remaining)),
+                "X-RateLimit-Reset", List.of(String.valueOf(resetAtMillis / 1000)));
+    }
+
+    @Test
+    void testCallRetriesUntilSuccess() throws IOException {
+        AtomicInteger attempts = new AtomicInteger();
+        String result = scheduler.call(() -> {
+            if (attempts.incrementAndGet() < 3) throw new IOException("API error");
+            return "ok";
+        }, 3, "fetch something");
+        assertEquals("ok", result);
+        assertEquals(3, attempts.get());
+    }
+
+    @Test
+    void testCallGivesUpAfterMaxAttempts() {
+        IOException e = assertThrows(IOException.class, () -> scheduler.call(() -> {
+            throw new IOException("API error");
+        }, 2, "fetch something"));
+        assertEquals("Failed to fetch something after 2 attempts", e.getMessage());
+    }
+
+    @Test
+    void testConnectorLeavesFailuresToCall() throws IOException {
+        GitHubConnector failing = mock(GitHubConnector.class);
+        when(failing.send(any())).thenThrow(new IOException("Connection reset"));
+        ScheduledConnector connector = new ScheduledConnector(failing, scheduler);
+        GitHubConnectorRequest request = mock(GitHubConnectorRequest.class);
+
+        assertThrows(IOException.class, () -> scheduler.call(() -> connector.send(request), 3, "fetch something"));
+        // Three attempts, not three times the connector's five
+        verify(failing, times(3)).send(request);
+        assertFalse(scheduler.isRetrying());
+
+        // On its own the connector retries
+        assertThrows(IOException.class, () -> connector.send(request));
+        verify(failing, times(8)).send(request);
+    }
+
+    @Test
+    void testBackoffGrowsAndIsCapped() {
+        for (int attempt = 0; attempt < 10; attempt++) {
+            long delay = Math.min(100, 10L << attempt);
+            long backoff = scheduler.backoff(attempt);
+            assertTrue(backoff >= delay / 2 && backoff <= delay, "attempt " + attempt + ": " + backoff);
+        }
+    }
+
+    @Test
+    void testRateLimitedResponseWaitsForReset() {
+        long resetAt = System.currentTimeMillis() + 60_000;
+        long wait = scheduler.onResponse(403, rateLimit(0, resetAt), 0);
+        assertTrue(wait > 55_000 && wait <= 60_000 + 10, "waits " + wait);
+        assertEquals(0, scheduler.getRemaining());
+    }
+
+    @Test
+    void testSecondaryRateLimitUsesRetryAfter() {
+        long wait = scheduler.onResponse(403, Map.of("Retry-After", List.of("3")), 0);
+        assertTrue(wait >= 3000 && wait <= 3010, "waits " + wait);
+    }
+
+    @Test
+    void testRetryAfterCanBeADate() {
+        String inAMinute = DateTimeFormatter.RFC_1123_DATE_TIME.format(ZonedDateTime.now(ZoneOffset.UTC).plusMinutes(1));
+        long wait = scheduler.onResponse(429, Map.of("Retry-After", List.of(inAMinute)), 0);
+        // The date only has whole seconds
+        assertTrue(wait >= 58_000 && wait <= 60_010, "waits " + wait);
+
+        // Neither seconds nor a date, so just the backoff
+        wait = scheduler.onResponse(429, Map.of("Retry-After", List.of("soon")), 0);
+        assertTrue(wait >= 0 && wait <= 20, "waits " + wait);
+    }
+
+    @Test
+    void testOtherFailuresAreNotRetried() {
+        long resetAt = System.currentTimeMillis() + 60_000;
+        assertEquals(-1, scheduler.onResponse(403, rateLimit(4000, resetAt), 0));
+        assertEquals(-1, scheduler.onResponse(404, rateLimit(3999, resetAt), 0));
+        assertEquals(-1, scheduler.onResponse(200, rateLimit(3998, resetAt), 0));
+        assertTrue(scheduler.onResponse(502, rateLimit(3997, resetAt), 0) >= 0);
+    }
+
+    @Test
+    void testOutOfOrderResponsesKeepLowestRemaining() {
+        long resetAt = System.currentTimeMillis() + 60_000;
+        scheduler.onResponse(200, rateLimit(100, resetAt), 0);
+        scheduler.onResponse(200, rateLimit(120, resetAt), 0);
+        assertEquals(100, scheduler.getRemaining());
+    }
+
+    @Test
+    void testAcquireWaitsForResetWhenQuotaIsUsedUp() throws IOException {
+        List<Long> waits = new ArrayList<>();
+        scheduler.sleeper = waits::add;
+        long resetAt = System.currentTimeMillis() + 60_000;
+        scheduler.onResponse(200, rateLimit(1, resetAt), 0);
+        scheduler.acquire();
+        // Until the reset, which the header only gives in whole seconds
+        assertEquals(1, waits.size());
+        assertTrue(waits.get(0) > 58_000 && waits.get(0) <= 60_000, "waits " + waits.get(0));
+    }
+}
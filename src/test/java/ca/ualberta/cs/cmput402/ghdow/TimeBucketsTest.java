@@ -0,0 +1,45 @@
+package ca.ualberta.cs.cmput402.ghdow;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TimeBucketsTest {
+
+    @Test
+    void testMatchesJavaTime() {
+        // Including zones with half hour offsets and half hour DST shifts.
+        String[] zones = {"UTC", "America/Edmonton", "Asia/Kolkata", "Australia/Lord_Howe", "America/St_Johns"};
+        Random random = new Random(402);
+        for (String zoneName : zones) {
+            ZoneId zone = ZoneId.of(zoneName);
+            TimeBuckets buckets = new TimeBuckets(zone);
+            for (int i = 0; i < 10_000; i++) {
+                // Anywhere from 1950 to 2150, so both sides of the precomputed table are covered
+                long millis = -631_152_000_000L + (long) (random.nextDouble() * 6_311_520_000_000L);
+                ZonedDateTime expected = Instant.ofEpochMilli(millis).atZone(zone);
+                String message = zoneName + " " + expected;
+                assertEquals(expected.getDayOfWeek().getValue(), buckets.dayOfWeek(millis), message);
+                assertEquals(expected.getMonthValue(), buckets.month(millis), message);
+                assertEquals(expected.getYear(), buckets.year(millis), message);
+                assertEquals(expected.getHour(), buckets.hour(millis), message);
+                assertEquals(expected.toLocalDate().toEpochDay(), buckets.epochDay(millis), message);
+            }
+        }
+    }
+
+    @Test
+    void testDaylightSavingBoundary() {
+        TimeBuckets buckets = new TimeBuckets(ZoneId.of("America/Edmonton"));
+        // 2024-03-10 clocks jump from 02:00 MST to 03:00 MDT (09:00 UTC).
+        long justBefore = Instant.parse("2024-03-10T08:59:59Z").toEpochMilli();
+        long justAfter = Instant.parse("2024-03-10T09:00:00Z").toEpochMilli();
+        assertEquals(1, buckets.hour(justBefore));
+        assertEquals(3, buckets.hour(justAfter));
+    }
+}